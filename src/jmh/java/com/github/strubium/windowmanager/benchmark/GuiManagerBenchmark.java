@@ -0,0 +1,58 @@
+package com.github.strubium.windowmanager.benchmark;
+
+import com.github.strubium.windowmanager.imgui.GuiBuilder;
+import com.github.strubium.windowmanager.imgui.GuiManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full frame rendered through GuiManager with several active screens.
+ *
+ * @author strubium
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuiManagerBenchmark {
+
+    @Param({"1", "10"})
+    public int screens;
+
+    private HeadlessImGui imgui;
+    private GuiManager guiManager;
+
+    @Setup
+    public void setup() {
+        imgui = new HeadlessImGui();
+        guiManager = new GuiManager();
+        GuiBuilder guiBuilder = new GuiBuilder();
+
+        for (int i = 0; i < screens; i++) {
+            String name = "Screen " + i;
+            guiManager.registerGUI(name, ignored -> {
+                guiBuilder.beginWindow(name);
+                for (int line = 0; line < 20; line++) {
+                    guiBuilder.addText("Line " + line);
+                }
+                guiBuilder.endWindow();
+            });
+            guiManager.addActiveGUI(name);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        imgui.destroy();
+    }
+
+    @Benchmark
+    public void render() {
+        imgui.newFrame();
+        guiManager.render();
+        imgui.render();
+    }
+}
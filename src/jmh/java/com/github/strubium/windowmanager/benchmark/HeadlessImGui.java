@@ -0,0 +1,54 @@
+package com.github.strubium.windowmanager.benchmark;
+
+import imgui.ImGui;
+import imgui.ImGuiIO;
+import imgui.internal.ImGuiContext;
+import imgui.type.ImInt;
+
+/**
+ * An ImGui context without a window or OpenGL backend, so frames can be built and measured anywhere.
+ * Frames go through {@code ImGui.newFrame()} and {@code ImGui.render()}, the draw data is never submitted.
+ *
+ * @author strubium
+ */
+public class HeadlessImGui {
+    public static final int WIDTH = 1280;
+    public static final int HEIGHT = 720;
+
+    private final ImGuiContext context;
+
+    /**
+     * Creates the context with a fixed display size and a built font atlas
+     */
+    public HeadlessImGui() {
+        context = ImGui.createContext();
+        ImGuiIO io = ImGui.getIO();
+        io.setIniFilename(null);
+        io.setDisplaySize(WIDTH, HEIGHT);
+        io.setDeltaTime(1f / 60f);
+        // NewFrame requires a built atlas, the pixels are never uploaded
+        io.getFonts().getTexDataAsRGBA32(new ImInt(), new ImInt());
+    }
+
+    /**
+     * Starts a frame
+     */
+    public void newFrame() {
+        ImGui.setCurrentContext(context);
+        ImGui.newFrame();
+    }
+
+    /**
+     * Ends the frame and builds its draw data
+     */
+    public void render() {
+        ImGui.render();
+    }
+
+    /**
+     * Destroys the context
+     */
+    public void destroy() {
+        ImGui.destroyContext(context);
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.strubium.windowmanager.benchmark;
+
+import com.github.strubium.windowmanager.imgui.CompiledHtml;
+import com.github.strubium.windowmanager.imgui.GuiBuilder;
+import com.github.strubium.windowmanager.imgui.HtmlToImGui;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of parsing HTML against the cost of rendering it, for documents of growing size.
+ *
+ * @author strubium
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int elements;
+
+    private HeadlessImGui imgui;
+    private GuiBuilder guiBuilder;
+    private String html;
+    private CompiledHtml compiled;
+
+    @Setup
+    public void setup() {
+        imgui = new HeadlessImGui();
+        guiBuilder = new GuiBuilder();
+        html = generateHtml(elements);
+        compiled = HtmlToImGui.compile(html);
+    }
+
+    @TearDown
+    public void tearDown() {
+        imgui.destroy();
+    }
+
+    /**
+     * Builds a document mixing every supported control, a tenth of them nested in divs
+     */
+    static String generateHtml(int elements) {
+        StringBuilder html = new StringBuilder("<h1>Benchmark</h1>");
+        for (int i = 1; i < elements; i++) {
+            switch (i % 5) {
+                case 0:
+                    html.append("<p>Paragraph ").append(i).append("</p>");
+                    break;
+                case 1:
+                    html.append("<button>Button ").append(i).append("</button>");
+                    break;
+                case 2:
+                    html.append("<input type=\"checkbox\" label=\"Checkbox ").append(i).append("\"/>");
+                    break;
+                case 3:
+                    html.append("<input type=\"range\" min=\"0\" max=\"100\" label=\"Slider ").append(i).append("\"/>");
+                    break;
+                default:
+                    html.append("<select label=\"Select ").append(i).append("\"><option>A</option><option>B</option></select>");
+            }
+            if (i % 10 == 0) {
+                html.append("<div><p>Nested ").append(i).append("</p></div>");
+            }
+        }
+        return html.toString();
+    }
+
+    @Benchmark
+    public CompiledHtml parse() {
+        return HtmlToImGui.compile(html);
+    }
+
+    @Benchmark
+    public void renderCompiled() {
+        imgui.newFrame();
+        guiBuilder.beginWindow("Benchmark");
+        HtmlToImGui.renderHtml(guiBuilder, compiled);
+        guiBuilder.endWindow();
+        imgui.render();
+    }
+
+    @Benchmark
+    public void renderString() {
+        imgui.newFrame();
+        guiBuilder.beginWindow("Benchmark");
+        HtmlToImGui.renderHtml(guiBuilder, html);
+        guiBuilder.endWindow();
+        imgui.render();
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.strubium.windowmanager.benchmark;
+
+import com.github.strubium.windowmanager.imgui.GuiBuilder;
+import imgui.type.ImBoolean;
+import imgui.type.ImFloat;
+import imgui.type.ImInt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of single GuiBuilder widgets. Each invocation draws a frame of {@value #WIDGETS} widgets,
+ * so the results are per widget with the frame overhead (see {@link #emptyFrame()}) spread across them.
+ *
+ * @author strubium
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidgetBenchmark {
+    static final int WIDGETS = 100;
+
+    private final String[] labels = new String[WIDGETS];
+    private final ImBoolean[] checkboxes = new ImBoolean[WIDGETS];
+    private final ImFloat[] sliders = new ImFloat[WIDGETS];
+    private final ImInt[] combos = new ImInt[WIDGETS];
+    private final List<String> options = Arrays.asList("First", "Second", "Third");
+    private final Runnable noAction = () -> { };
+    private HeadlessImGui imgui;
+    private GuiBuilder guiBuilder;
+
+    @Setup
+    public void setup() {
+        imgui = new HeadlessImGui();
+        guiBuilder = new GuiBuilder();
+        for (int i = 0; i < WIDGETS; i++) {
+            labels[i] = "Widget " + i;
+            checkboxes[i] = new ImBoolean();
+            sliders[i] = new ImFloat();
+            combos[i] = new ImInt();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        imgui.destroy();
+    }
+
+    private void begin() {
+        imgui.newFrame();
+        guiBuilder.beginWindow("Benchmark");
+    }
+
+    private void end() {
+        guiBuilder.endWindow();
+        imgui.render();
+    }
+
+    @Benchmark
+    public void emptyFrame() {
+        begin();
+        end();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDGETS)
+    public void text() {
+        begin();
+        for (int i = 0; i < WIDGETS; i++) {
+            guiBuilder.addText(labels[i]);
+        }
+        end();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDGETS)
+    public void button() {
+        begin();
+        for (int i = 0; i < WIDGETS; i++) {
+            guiBuilder.addButton(labels[i], noAction);
+        }
+        end();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDGETS)
+    public void checkbox() {
+        begin();
+        for (int i = 0; i < WIDGETS; i++) {
+            guiBuilder.addCheckbox(labels[i], checkboxes[i]);
+        }
+        end();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDGETS)
+    public void slider() {
+        begin();
+        for (int i = 0; i < WIDGETS; i++) {
+            guiBuilder.addSlider(labels[i], sliders[i], 0, 100, "%.1f", 200);
+        }
+        end();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDGETS)
+    public void comboBox() {
+        begin();
+        for (int i = 0; i < WIDGETS; i++) {
+            guiBuilder.addComboBox(labels[i], combos[i], options);
+        }
+        end();
+    }
+}
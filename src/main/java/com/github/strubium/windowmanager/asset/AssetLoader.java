@@ -0,0 +1,178 @@
+package com.github.strubium.windowmanager.asset;
+
+import com.github.strubium.windowmanager.imgui.CompiledHtml;
+import com.github.strubium.windowmanager.imgui.HtmlToImGui;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Loads assets on a thread pool so decoding and parsing overlap with window and OpenGL setup.
+ * <p>
+ * Anything that needs the OpenGL context or GLFW has to happen on the main thread, use {@link #onMainThread} to
+ * hand results back and call {@link #runMainThreadTasks()} from the main loop (or {@link #await} during startup).
+ *
+ * @author strubium
+ */
+public class AssetLoader {
+    private final ExecutorService pool;
+    private final BlockingQueue<Runnable> mainThreadTasks = new LinkedBlockingQueue<>();
+    private final Executor mainThread = mainThreadTasks::add;
+
+    /**
+     * Create an AssetLoader with one thread per available processor
+     */
+    public AssetLoader() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Create an AssetLoader
+     *
+     * @param threads The number of loader threads
+     */
+    public AssetLoader(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Asset Loader #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Decodes an image on the loader threads
+     *
+     * @param imagePath The path to the image (must be PNG or similar)
+     * @return A future completed with the decoded image, which the caller must free
+     */
+    public CompletableFuture<DecodedImage> loadImage(String imagePath) {
+        return CompletableFuture.supplyAsync(() -> DecodedImage.load(imagePath), pool);
+    }
+
+    /**
+     * Reads a file, such as a font, on the loader threads
+     *
+     * @param path The path to the file
+     * @return A future completed with the contents of the file
+     */
+    public CompletableFuture<byte[]> loadFile(String path) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return Files.readAllBytes(Paths.get(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    /**
+     * Parses HTML on the loader threads
+     *
+     * @param html The HTML to compile
+     * @return A future completed with the compiled HTML, ready for {@link HtmlToImGui#renderHtml}
+     */
+    public CompletableFuture<CompiledHtml> compileHtml(String html) {
+        return CompletableFuture.supplyAsync(() -> HtmlToImGui.compile(html), pool);
+    }
+
+    /**
+     * Runs an action on the main thread once a load finishes, the next time main thread tasks are run
+     *
+     * @param future The load to wait for
+     * @param action The action to run with the result (Ex: uploading a texture)
+     * @return A future completed once the action has run
+     */
+    public <T> CompletableFuture<Void> onMainThread(CompletableFuture<T> future, Consumer<T> action) {
+        return future.thenAcceptAsync(action, mainThread);
+    }
+
+    /**
+     * Gets an executor that runs tasks on the main thread, the next time main thread tasks are run
+     *
+     * @return The main thread executor
+     */
+    public Executor getMainThreadExecutor() {
+        return mainThread;
+    }
+
+    /**
+     * Runs every task waiting for the main thread, call this once per frame from the main thread
+     */
+    public void runMainThreadTasks() {
+        Runnable task;
+        while ((task = mainThreadTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Blocks the main thread until the given loads complete, running main thread tasks as they arrive
+     *
+     * @param futures The loads to wait for
+     */
+    public void await(CompletableFuture<?>... futures) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures);
+        try {
+            while (!all.isDone()) {
+                Runnable task = mainThreadTasks.poll(1, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    task.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        runMainThreadTasks();
+        all.join();
+    }
+
+    /**
+     * Decodes several images in parallel
+     *
+     * @param imagePaths The paths to the images
+     * @return A future completed with the decoded images in the same order, which the caller must free
+     */
+    public CompletableFuture<List<DecodedImage>> loadImages(String... imagePaths) {
+        List<CompletableFuture<DecodedImage>> loads = new ArrayList<>();
+        for (String imagePath : imagePaths) {
+            loads.add(loadImage(imagePath));
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).handle((ignored, error) -> {
+            List<DecodedImage> images = new ArrayList<>();
+            for (CompletableFuture<DecodedImage> load : loads) {
+                if (!load.isCompletedExceptionally()) {
+                    images.add(load.join());
+                }
+            }
+            if (error != null) {
+                // Don't leak the images that did decode
+                for (DecodedImage image : images) {
+                    image.free();
+                }
+                throw error instanceof RuntimeException ? (RuntimeException) error : new RuntimeException(error);
+            }
+            return images;
+        });
+    }
+
+    /**
+     * Stops the loader threads, pending loads are abandoned
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
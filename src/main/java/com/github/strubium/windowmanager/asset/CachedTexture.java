@@ -0,0 +1,63 @@
+package com.github.strubium.windowmanager.asset;
+
+/**
+ * An image texture held by a {@link TextureCache}
+ *
+ * @author strubium
+ */
+public class CachedTexture {
+    enum State {
+        QUEUED, DECODING, UPLOADING, READY, FAILED, EVICTED
+    }
+
+    final String path;
+    State state = State.QUEUED;
+    DecodedImage image;
+    boolean failed;
+    long lastRequested;
+    int id;
+    int width;
+    int height;
+    long byteSize;
+    // Where the pixels start in the pixel buffer while uploading
+    long uploadOffset;
+
+    CachedTexture(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return true if the texture is uploaded and can be drawn
+     */
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    /**
+     * @return true if the image could not be loaded
+     */
+    public boolean isFailed() {
+        return state == State.FAILED;
+    }
+
+    /**
+     * @return The OpenGL texture id, or 0 if the texture isn't ready
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The width of the image in pixels, or 0 if the image hasn't been decoded yet
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the image in pixels, or 0 if the image hasn't been decoded yet
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.strubium.windowmanager.asset;
+
+import org.lwjgl.stb.STBImage;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.system.MemoryStack.stackPush;
+
+/**
+ * An image decoded to RGBA pixels by STB, ready to be handed to GLFW or OpenGL.
+ * The pixels live off-heap and must be released with {@link #free()}.
+ *
+ * @author strubium
+ */
+public class DecodedImage {
+    private final int width;
+    private final int height;
+    private ByteBuffer pixels;
+
+    private DecodedImage(int width, int height, ByteBuffer pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Decodes an image file to RGBA pixels. Safe to call from any thread.
+     *
+     * @param imagePath The path to the image (must be PNG or similar)
+     * @return The decoded image
+     */
+    public static DecodedImage load(String imagePath) {
+        try (MemoryStack stack = stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+
+            ByteBuffer image = STBImage.stbi_load(imagePath, width, height, channels, 4);
+            if (image == null) {
+                throw new RuntimeException("Failed to load image " + imagePath + ": " + STBImage.stbi_failure_reason());
+            }
+            return new DecodedImage(width.get(0), height.get(0), image);
+        }
+    }
+
+    /**
+     * Decodes an image held in memory to RGBA pixels. Safe to call from any thread.
+     *
+     * @param data The encoded image, must be a direct buffer
+     * @return The decoded image
+     */
+    public static DecodedImage load(ByteBuffer data) {
+        try (MemoryStack stack = stackPush()) {
+            IntBuffer width = stack.mallocInt(1);
+            IntBuffer height = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+
+            ByteBuffer image = STBImage.stbi_load_from_memory(data, width, height, channels, 4);
+            if (image == null) {
+                throw new RuntimeException("Failed to decode image: " + STBImage.stbi_failure_reason());
+            }
+            return new DecodedImage(width.get(0), height.get(0), image);
+        }
+    }
+
+    /**
+     * @return The width of the image in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the image in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The RGBA pixels, 4 bytes per pixel row by row
+     */
+    public ByteBuffer getPixels() {
+        if (pixels == null) {
+            throw new IllegalStateException("Image has already been freed");
+        }
+        return pixels;
+    }
+
+    /**
+     * @return The size of the pixels in bytes
+     */
+    public int getByteSize() {
+        return width * height * 4;
+    }
+
+    /**
+     * Releases the pixels, the image can't be used afterwards
+     */
+    public void free() {
+        if (pixels != null) {
+            STBImage.stbi_image_free(pixels);
+            pixels = null;
+        }
+    }
+}
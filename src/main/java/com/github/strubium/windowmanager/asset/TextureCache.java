@@ -0,0 +1,347 @@
+package com.github.strubium.windowmanager.asset;
+
+import com.github.strubium.windowmanager.metrics.FlightEvents;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.GL_PIXEL_UNPACK_BUFFER;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Keeps image textures on the GPU within a byte budget, evicting the least recently drawn ones.
+ * <p>
+ * Images are decoded on the {@link AssetLoader} threads and streamed to the GPU by {@link #update()}, which must be
+ * called once per frame on the render thread. The pixels are copied into one of two pixel buffer objects in one frame
+ * and turned into textures the next, so the driver copies them while the frame in between renders. Only a limited
+ * number of bytes are uploaded each frame and only images requested recently are decoded. The budget is never
+ * exceeded: once the images on screen fill it, new images keep their placeholder until others scroll away.
+ *
+ * @author strubium
+ */
+public class TextureCache {
+    // Entries that never got a texture are forgotten once they haven't been requested for this many frames
+    private static final int PRUNE_AFTER_FRAMES = 120;
+
+    private final AssetLoader loader;
+    private final long budgetBytes;
+    private final long uploadBytesPerFrame;
+    private final int maxPendingDecodes;
+    // Moved to the end on every request, so iteration starts at the least recently requested texture
+    private final Map<String, CachedTexture> textures = new LinkedHashMap<>(64);
+    private final Queue<CachedTexture> decoded = new ConcurrentLinkedQueue<>();
+    // Copied into the pixel buffer last frame, turned into textures this frame
+    private final List<CachedTexture> staged = new ArrayList<>();
+    private final List<DecodedImage> stagingImages = new ArrayList<>();
+    private final int[] pixelBuffers = new int[2];
+    private int pixelBufferIndex;
+    // Includes the textures still uploading
+    private long residentBytes;
+    // The largest image requested this frame that didn't fit the budget, evict() makes room for it next frame
+    private long deferredBytes;
+    private int pendingDecodes;
+    private long frame;
+    // Set by dispose, decodes still running free their image instead of queueing it
+    private volatile boolean disposed;
+
+    /**
+     * Create a TextureCache that uploads at most 8 MB per frame
+     *
+     * @param loader The loader to decode images with
+     * @param budgetBytes The GPU memory the textures may use, in bytes
+     */
+    public TextureCache(AssetLoader loader, long budgetBytes) {
+        this(loader, budgetBytes, 8L * 1024 * 1024, 16);
+    }
+
+    /**
+     * Create a TextureCache
+     *
+     * @param loader The loader to decode images with
+     * @param budgetBytes The GPU memory the textures may use, in bytes
+     * @param uploadBytesPerFrame The most bytes to upload in one frame, at least one image is uploaded per frame
+     * @param maxPendingDecodes The most images to decode at once
+     */
+    public TextureCache(AssetLoader loader, long budgetBytes, long uploadBytesPerFrame, int maxPendingDecodes) {
+        this.loader = loader;
+        this.budgetBytes = budgetBytes;
+        this.uploadBytesPerFrame = uploadBytesPerFrame;
+        this.maxPendingDecodes = maxPendingDecodes;
+    }
+
+    /**
+     * Requests the texture for an image, starting to load it if needed. Request textures every frame they are
+     * drawn, a texture that isn't requested may be evicted and its id reused.
+     *
+     * @param imagePath The path to the image (must be PNG or similar)
+     * @return The texture, check {@link CachedTexture#isReady()} before drawing it
+     */
+    public CachedTexture request(String imagePath) {
+        if (disposed) {
+            throw new IllegalStateException("TextureCache has been disposed");
+        }
+        CachedTexture texture = textures.remove(imagePath);
+        if (texture == null) {
+            texture = new CachedTexture(imagePath);
+        }
+        textures.put(imagePath, texture);
+        texture.lastRequested = frame;
+
+        if (texture.state == CachedTexture.State.QUEUED && texture.byteSize > 0 && !fits(texture.byteSize)) {
+            // Decoded before but the budget was full, wait until evict() has made room
+            deferredBytes = Math.max(deferredBytes, texture.byteSize);
+        } else if (texture.state == CachedTexture.State.QUEUED && pendingDecodes < maxPendingDecodes) {
+            CachedTexture loading = texture;
+            loading.state = CachedTexture.State.DECODING;
+            pendingDecodes++;
+            loader.loadImage(imagePath).whenComplete((image, error) -> {
+                if (disposed) {
+                    freeImage(image);
+                    return;
+                }
+                loading.image = image;
+                loading.failed = error != null;
+                decoded.add(loading);
+                // dispose may have drained the queue just before the add, whoever removes it frees it
+                if (disposed && decoded.remove(loading)) {
+                    freeImage(loading.image);
+                    loading.image = null;
+                }
+            });
+        }
+        return texture;
+    }
+
+    /**
+     * Returns the texture for an image if the cache has an entry for it, without requesting it. Useful to size a
+     * placeholder before deciding whether the image is visible.
+     *
+     * @param imagePath The path to the image
+     * @return The texture, or null if the image isn't cached
+     */
+    public CachedTexture peek(String imagePath) {
+        return textures.get(imagePath);
+    }
+
+    /**
+     * Finishes the uploads started last frame, starts uploading decoded images and evicts textures to stay within the
+     * budget. Call this once per frame on the render thread.
+     */
+    public void update() {
+        frame++;
+        finishUploads();
+        evict(deferredBytes);
+        deferredBytes = 0;
+
+        long uploaded = 0;
+        CachedTexture texture;
+        while (uploaded < uploadBytesPerFrame && (texture = decoded.poll()) != null) {
+            pendingDecodes--;
+            DecodedImage image = texture.image;
+            texture.image = null;
+
+            if (texture.failed) {
+                texture.state = CachedTexture.State.FAILED;
+                continue;
+            }
+            texture.width = image.getWidth();
+            texture.height = image.getHeight();
+            texture.byteSize = image.getByteSize();
+            if (textures.get(texture.path) != texture || frame - texture.lastRequested > 1) {
+                // Scrolled away while decoding, let the next request load it again
+                textures.remove(texture.path, texture);
+                image.free();
+                continue;
+            }
+            evict(texture.byteSize);
+            if (!fits(texture.byteSize)) {
+                // Everything resident is on screen, keep the placeholder and decode it again once there is room
+                texture.state = CachedTexture.State.QUEUED;
+                image.free();
+            } else {
+                texture.state = CachedTexture.State.UPLOADING;
+                texture.uploadOffset = uploaded;
+                residentBytes += texture.byteSize;
+                uploaded += texture.byteSize;
+                staged.add(texture);
+                stagingImages.add(image);
+            }
+        }
+        stageUploads(uploaded);
+
+        evict(0);
+        if (frame % PRUNE_AFTER_FRAMES == 0) {
+            prune();
+        }
+    }
+
+    /**
+     * @return The GPU memory used by the cached textures, in bytes
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * @return The number of cached textures, including ones still loading
+     */
+    public int size() {
+        return textures.size();
+    }
+
+    /**
+     * Deletes every texture and the pixel buffers, the cache can't be used afterwards. Images still being decoded
+     * are freed as they finish. Call this on the render thread.
+     */
+    public void dispose() {
+        disposed = true;
+        for (CachedTexture texture : textures.values()) {
+            if (texture.id != 0) {
+                glDeleteTextures(texture.id);
+                texture.id = 0;
+            }
+        }
+        textures.clear();
+        residentBytes = 0;
+
+        CachedTexture texture;
+        while ((texture = decoded.poll()) != null) {
+            freeImage(texture.image);
+            texture.image = null;
+        }
+        pendingDecodes = 0;
+
+        staged.clear();
+        for (int i = 0; i < pixelBuffers.length; i++) {
+            if (pixelBuffers[i] != 0) {
+                glDeleteBuffers(pixelBuffers[i]);
+                pixelBuffers[i] = 0;
+            }
+        }
+    }
+
+    private static void freeImage(DecodedImage image) {
+        if (image != null) {
+            image.free();
+        }
+    }
+
+    // The budget is never exceeded, except by a single image larger than the whole budget
+    private boolean fits(long bytes) {
+        return residentBytes == 0 || residentBytes + bytes <= budgetBytes;
+    }
+
+    // Copies this frame's images into the other pixel buffer, their textures are created from it next frame
+    private void stageUploads(long totalBytes) {
+        if (staged.isEmpty()) {
+            return;
+        }
+        pixelBufferIndex ^= 1;
+        if (pixelBuffers[pixelBufferIndex] == 0) {
+            pixelBuffers[pixelBufferIndex] = glGenBuffers();
+        }
+
+        // Orphan the buffer so the driver never has to wait for an earlier upload to finish reading it
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBuffers[pixelBufferIndex]);
+        glBufferData(GL_PIXEL_UNPACK_BUFFER, totalBytes, GL_STREAM_DRAW);
+        ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, totalBytes,
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+        if (mapped != null) {
+            for (DecodedImage image : stagingImages) {
+                mapped.put(image.getPixels());
+                image.getPixels().rewind();
+            }
+            glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+        } else {
+            for (CachedTexture texture : staged) {
+                texture.state = CachedTexture.State.FAILED;
+                residentBytes -= texture.byteSize;
+            }
+            staged.clear();
+        }
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+
+        for (DecodedImage image : stagingImages) {
+            image.free();
+        }
+        stagingImages.clear();
+    }
+
+    // Creates the textures for the images staged last frame, the driver has had a frame to copy them
+    private void finishUploads() {
+        if (staged.isEmpty()) {
+            return;
+        }
+        int previousTexture = glGetInteger(GL_TEXTURE_BINDING_2D);
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, pixelBuffers[pixelBufferIndex]);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+        for (CachedTexture texture : staged) {
+            Object event = FlightEvents.beginTextureUpload();
+            texture.id = glGenTextures();
+            glBindTexture(GL_TEXTURE_2D, texture.id);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, texture.width, texture.height, 0, GL_RGBA, GL_UNSIGNED_BYTE,
+                    texture.uploadOffset);
+            texture.state = CachedTexture.State.READY;
+            FlightEvents.endTextureUpload(event, texture.path, texture.width, texture.height, texture.byteSize);
+        }
+        glBindTexture(GL_TEXTURE_2D, previousTexture);
+        glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        staged.clear();
+    }
+
+    /**
+     * Evicts the least recently drawn textures until the given number of bytes fits in the budget. Textures drawn
+     * last frame are never evicted.
+     *
+     * @param neededBytes The bytes to make room for
+     */
+    private void evict(long neededBytes) {
+        Iterator<CachedTexture> iterator = textures.values().iterator();
+        while (residentBytes > 0 && residentBytes + neededBytes > budgetBytes && iterator.hasNext()) {
+            CachedTexture texture = iterator.next();
+            if (texture.lastRequested >= frame - 1) {
+                // Everything from here on was drawn last frame, never evict what is on screen
+                break;
+            }
+            if (texture.state == CachedTexture.State.READY) {
+                glDeleteTextures(texture.id);
+                residentBytes -= texture.byteSize;
+                texture.id = 0;
+                texture.state = CachedTexture.State.EVICTED;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets entries that hold no texture (still queued, failed or evicted) and haven't been requested for a while,
+     * so scrolling past many distinct images doesn't grow the map forever
+     */
+    private void prune() {
+        Iterator<CachedTexture> iterator = textures.values().iterator();
+        while (iterator.hasNext()) {
+            CachedTexture texture = iterator.next();
+            if (frame - texture.lastRequested <= PRUNE_AFTER_FRAMES) {
+                // Access ordered, everything from here on was requested more recently
+                break;
+            }
+            if (texture.state == CachedTexture.State.QUEUED || texture.state == CachedTexture.State.FAILED
+                    || texture.state == CachedTexture.State.EVICTED) {
+                iterator.remove();
+            }
+        }
+    }
+}
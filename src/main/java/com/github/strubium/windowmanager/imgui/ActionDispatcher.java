@@ -0,0 +1,177 @@
+package com.github.strubium.windowmanager.imgui;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs the actions registered with {@link HtmlToImGui} off the render thread, set it with
+ * {@link HtmlToImGui#setActionDispatcher(ActionDispatcher)}.
+ * <p>
+ * Events are coalesced per control: while a control's action is waiting or running only its newest value is kept,
+ * so dragging a slider runs the action with the latest value instead of once per frame, and a slow action never
+ * holds up a frame. Actions of one control never run at the same time. Clicks on a button whose action hasn't
+ * finished yet run it once more, not once per click.
+ * <p>
+ * Actions hand results back with {@link #getRenderThreadExecutor()}, those tasks run at the start of the next
+ * {@link HtmlToImGui#renderHtml} on the render thread. An action that throws is handed to the error handler, by default
+ * the uncaught exception handler of the thread it ran on.
+ *
+ * @author strubium
+ */
+public class ActionDispatcher {
+    private static final Object NONE = new Object();
+
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final Queue<Runnable> renderThreadTasks = new ConcurrentLinkedQueue<>();
+    private final Executor renderThread = renderThreadTasks::add;
+    private volatile BiConsumer<String, Throwable> errorHandler;
+
+    /**
+     * Create an ActionDispatcher
+     *
+     * @param executor Runs the actions, it is not shut down by {@link #shutdown()}
+     */
+    public ActionDispatcher(Executor executor) {
+        this(executor, false);
+    }
+
+    private ActionDispatcher(Executor executor, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Create an ActionDispatcher that runs every action on a virtual thread on Java 21 and later, or on a pool of
+     * daemon threads on older runtimes
+     *
+     * @return The dispatcher
+     */
+    public static ActionDispatcher virtualThreads() {
+        try {
+            // Looked up by name so the library still runs on Java 8
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new ActionDispatcher(executor, true);
+        } catch (ReflectiveOperationException e) {
+            // Virtual threads aren't available before Java 21
+            AtomicInteger count = new AtomicInteger();
+            return new ActionDispatcher(Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "Action Dispatcher #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }), true);
+        }
+    }
+
+    /**
+     * Queues an event of a control, replacing the value of an event of the same control that hasn't run yet.
+     * If the executor rejects it, e.g. after {@link #shutdown()}, the action runs on the calling thread instead.
+     *
+     * @param controlId The id of the control
+     * @param value The new value of the control
+     * @param action The action to run with the value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void dispatch(String controlId, T value, Consumer<? super T> action) {
+        Slot slot = slots.computeIfAbsent(controlId, Slot::new);
+        slot.action = (Consumer<Object>) action;
+        slot.latest.set(value);
+        if (slot.scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> drain(slot));
+            } catch (RejectedExecutionException e) {
+                // Nothing will drain the slot, do it here so the control isn't stuck as scheduled
+                drain(slot);
+            }
+        }
+    }
+
+    /**
+     * Sets what happens when an action throws, called on the thread the action ran on
+     *
+     * @param handler Receives the id of the control and the exception, or null for the thread's uncaught exception handler
+     */
+    public void setErrorHandler(BiConsumer<String, Throwable> handler) {
+        this.errorHandler = handler;
+    }
+
+    private void drain(Slot slot) {
+        while (true) {
+            Object value = slot.latest.getAndSet(NONE);
+            if (value != NONE) {
+                try {
+                    slot.action.accept(value);
+                } catch (RuntimeException e) {
+                    handleError(slot.controlId, e);
+                }
+                continue;
+            }
+            slot.scheduled.set(false);
+            // A value can arrive between taking the last one and clearing the flag, whoever sets the flag runs it
+            if (slot.latest.get() == NONE || !slot.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void handleError(String controlId, RuntimeException e) {
+        BiConsumer<String, Throwable> handler = errorHandler;
+        if (handler != null) {
+            handler.accept(controlId, e);
+        } else {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    /**
+     * Gets an executor that runs tasks on the render thread, at the start of the next {@link HtmlToImGui#renderHtml}
+     *
+     * @return The render thread executor
+     */
+    public Executor getRenderThreadExecutor() {
+        return renderThread;
+    }
+
+    /**
+     * Runs every task handed back to the render thread, {@link HtmlToImGui#renderHtml} does this every frame
+     */
+    public void runRenderThreadTasks() {
+        Runnable task;
+        while ((task = renderThreadTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Stops the executor if this dispatcher created it, actions already queued still run
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private static final class Slot {
+        final String controlId;
+        final AtomicReference<Object> latest = new AtomicReference<>(NONE);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile Consumer<Object> action;
+
+        Slot(String controlId) {
+            this.controlId = controlId;
+        }
+    }
+}
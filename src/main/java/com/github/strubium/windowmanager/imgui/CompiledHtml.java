@@ -0,0 +1,144 @@
+package com.github.strubium.windowmanager.imgui;
+
+import com.github.strubium.windowmanager.window.AcceleratorTable;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTML parsed once and ready to be rendered every frame by {@link HtmlToImGui}.
+ * Control ids and dropdown options are worked out up front so rendering doesn't rebuild them each frame.
+ *
+ * @author strubium
+ */
+public final class CompiledHtml {
+    private final Element body;
+    private final Map<Element, String> ids = new IdentityHashMap<>();
+    private final Map<Element, List<String>> options = new IdentityHashMap<>();
+    // The child elements of every element, jsoup's children() copies them into a new list on each call
+    private final Map<Element, Element[]> children = new IdentityHashMap<>();
+    // Rows and width of each <textarea>, parsing them every frame would allocate
+    private final Map<Element, float[]> textAreaSizes = new IdentityHashMap<>();
+    private final List<String> menuLabels = new ArrayList<>();
+    private final List<List<String>> menuItemLabels = new ArrayList<>();
+    private final List<List<String>> menuItemShortcuts = new ArrayList<>();
+    private final List<List<Runnable>> menuItemActions = new ArrayList<>();
+    private final MenuBar menuBar;
+    private Element firstMenu;
+
+    CompiledHtml(Document document) {
+        this.body = document.body();
+        compile(body, "");
+        this.menuBar = MenuBar.compile(menuLabels, menuItemLabels, menuItemShortcuts, menuItemActions);
+    }
+
+    private void compile(Element element, String path) {
+        Element[] elementChildren = element.children().toArray(new Element[0]);
+        children.put(element, elementChildren);
+        int index = 0;
+        for (Element child : elementChildren) {
+            String id = path + "/" + child.tagName() + "[" + index + "]";
+            index++;
+            ids.put(child, id);
+
+            if ("select".equals(child.tagName())) {
+                List<String> optionTexts = new ArrayList<>();
+                for (Element option : child.select("option")) {
+                    optionTexts.add(option.text());
+                }
+                options.put(child, Collections.unmodifiableList(optionTexts));
+            } else if ("textarea".equals(child.tagName())) {
+                textAreaSizes.put(child, new float[]{
+                        HtmlToImGui.parseFloatOrDefault(child.attr("rows"), 4f),
+                        HtmlToImGui.parseFloatOrDefault(child.attr("width"), 0f)});
+            } else if ("menu".equals(child.tagName())) {
+                compileMenu(child, id);
+            }
+
+            compile(child, id);
+        }
+    }
+
+    private void compileMenu(Element menu, String id) {
+        if (firstMenu == null) {
+            firstMenu = menu;
+        }
+        List<String> labels = new ArrayList<>();
+        List<String> shortcuts = new ArrayList<>();
+        List<Runnable> actions = new ArrayList<>();
+        int index = 0;
+        for (Element item : menu.children()) {
+            if (!"li".equals(item.tagName())) {
+                continue;
+            }
+            String text = item.text();
+            // Items run the button action of their id, or of their path like any other control
+            String actionId = item.hasAttr("id") ? item.attr("id") : id + "/li[" + index + "]";
+            index++;
+            labels.add(text);
+            shortcuts.add(checkAccelerator(item.attr("accelerator"), actionId));
+            actions.add(() -> HtmlToImGui.runButtonAction(actionId, text));
+        }
+        menuLabels.add(menu.hasAttr("label") ? menu.attr("label") : id);
+        menuItemLabels.add(labels);
+        menuItemShortcuts.add(shortcuts);
+        menuItemActions.add(actions);
+    }
+
+    // A shortcut that can't be read is dropped with a message, like a binding that can't be resolved
+    private static String checkAccelerator(String accelerator, String id) {
+        if (accelerator.isEmpty()) {
+            return accelerator;
+        }
+        try {
+            AcceleratorTable.parse(accelerator);
+            return accelerator;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring the shortcut of menu item " + id + ": " + e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * Gets the menu bar made of every {@code <menu label="File">} in the HTML. Each {@code <li>} inside is an item,
+     * with an optional {@code accelerator="Ctrl+S"}, and runs the button action registered for its id.
+     *
+     * @return The menu bar, with no menus if the HTML has none
+     */
+    public MenuBar getMenuBar() {
+        return menuBar;
+    }
+
+    boolean isFirstMenu(Element element) {
+        return element == firstMenu;
+    }
+
+    int getElementCount() {
+        return ids.size();
+    }
+
+    Element getBody() {
+        return body;
+    }
+
+    String getId(Element element) {
+        return ids.get(element);
+    }
+
+    Element[] getChildren(Element element) {
+        return children.get(element);
+    }
+
+    float[] getTextAreaSize(Element textArea) {
+        return textAreaSizes.get(textArea);
+    }
+
+    List<String> getOptions(Element select) {
+        return options.get(select);
+    }
+}
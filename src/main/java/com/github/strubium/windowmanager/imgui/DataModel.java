@@ -0,0 +1,70 @@
+package com.github.strubium.windowmanager.imgui;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application state that HTML controls can bind to with {@code bind="name.field"}, see
+ * {@link HtmlToImGui#registerModel(String, DataModel)}.
+ * <p>
+ * Bound fields must be {@code boolean}, a number type or {@code String}. After changing fields in code call
+ * {@link #markChanged(String)} for each field, or {@link #markChanged()} when many changed, bound controls only read
+ * a field again when it was marked. When the user edits a control the field is written and marked too, so other
+ * controls bound to the same field follow while controls bound to other fields aren't touched. Changes made on
+ * another thread become visible to the render thread once they are marked.
+ *
+ * @author strubium
+ */
+public abstract class DataModel {
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, AtomicLong> fieldVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Tells every bound control the model has changed
+     */
+    public void markChanged() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Tells the controls bound to one field that it has changed
+     *
+     * @param field The name of the field
+     * @throws IllegalArgumentException if the model has no field with that name
+     */
+    public void markChanged(String field) {
+        getFieldVersion(field).incrementAndGet();
+    }
+
+    /**
+     * @return A number that changes every time {@link #markChanged()} is called
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Gets the counter of one field, bindings keep it so checking the field every frame is a single read
+     *
+     * @param field The name of the field
+     * @return The counter, incremented by {@link #markChanged(String)}
+     */
+    AtomicLong getFieldVersion(String field) {
+        AtomicLong counter = fieldVersions.get(field);
+        return counter != null ? counter : fieldVersions.computeIfAbsent(field, this::newFieldVersion);
+    }
+
+    // Only names of real fields get a counter, so a misspelled markChanged fails instead of marking nothing
+    private AtomicLong newFieldVersion(String field) {
+        for (Class<?> c = getClass(); c != DataModel.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredField(field);
+                return new AtomicLong();
+            } catch (NoSuchFieldException e) {
+                // Try the superclass
+            }
+        }
+        throw new IllegalArgumentException(getClass().getName() + " has no field " + field);
+    }
+}
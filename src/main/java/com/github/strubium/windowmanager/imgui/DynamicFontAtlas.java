@@ -0,0 +1,522 @@
+package com.github.strubium.windowmanager.imgui;
+
+import imgui.ImFont;
+import imgui.ImFontAtlas;
+import imgui.ImFontConfig;
+import imgui.ImFontGlyph;
+import imgui.type.ImInt;
+import org.lwjgl.stb.STBTTFontinfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.stb.STBTruetype.*;
+
+/**
+ * A font atlas that starts with a minimal glyph set and grows with the text that is actually drawn.
+ * <p>
+ * Text passed through {@link GuiBuilder} is scanned for codepoints the atlas doesn't have yet. Those are rasterized
+ * with STB on a background thread and added at the next frame boundary once they are ready. Glyph pixels live in a
+ * page this class packs itself, reserved in ImGui's atlas as one large rectangle that ImGui always places in the
+ * same spot. New glyphs go into the free space of the page and only the rows they touch are uploaded to the
+ * existing texture. ImGui still has to rebuild its glyph tables to learn new codepoints, but each glyph is only a
+ * one texel rectangle to it, and the texture is only recreated when the page is full or the layout moved.
+ * Only the Basic Multilingual Plane is supported, as ImGui is built with 16 bit characters.
+ * <p>
+ * The ImGui atlas is cleared every time glyphs are added, so every font has to go through this class,
+ * {@link GuiBuilder#setDynamicFonts(DynamicFontAtlas)} refuses to take over once fonts are set.
+ *
+ * @author strubium
+ */
+public class DynamicFontAtlas {
+    private static final short[] HOST_RANGES = {0x20, 0x20, 0};
+    private static final int FIRST_PRINTABLE = 0x20;
+    private static final int LAST_ASCII = 0x7E;
+    // The page is registered as a glyph of this codepoint so its position can be read back, it is never drawn
+    private static final short PAGE_CODEPOINT = 0x01;
+    private static final int PAGE_WIDTH = 1024;
+    private static final int PAGE_MIN_HEIGHT = 128;
+    // Room next to the page for ImGui's own rectangles: the mouse cursors, baked lines and one texel per glyph
+    private static final int TEXTURE_EXTRA_WIDTH = 256;
+    private static final int GLYPH_PADDING = 1;
+
+    private final List<DynamicFont> fonts = new ArrayList<>();
+    private final BitSet requested = new BitSet(0x10000);
+    private final BitSet pending = new BitSet(0x10000);
+    private final Queue<Glyph> finished = new ConcurrentLinkedQueue<>();
+    private final ExecutorService rasterizer;
+    private final long rebuildIntervalNanos;
+    private long lastRebuild;
+
+    // RGBA copy of the page, glyphs are packed into shelves from the top left
+    private ByteBuffer page = ByteBuffer.allocateDirect(PAGE_WIDTH * PAGE_MIN_HEIGHT * 4);
+    private int pageHeight = PAGE_MIN_HEIGHT;
+    private int shelfX;
+    private int shelfY;
+    private int shelfHeight;
+    // Page rows changed since the last upload
+    private int dirtyTop = Integer.MAX_VALUE;
+    private int dirtyBottom;
+    // Where ImGui put the page at the last build
+    private int pageX = -1;
+    private int pageY;
+    private int textureWidth;
+    private int textureHeight;
+    // Checksum of ImGui's own pixels (cursors, white pixel, lines) at the last build, the page area is always blank there
+    private long textureChecksum = -1;
+    private final CRC32 crc = new CRC32();
+    private final ImInt pixelsWidth = new ImInt();
+    private final ImInt pixelsHeight = new ImInt();
+    // Set when the texture has to be recreated before glyphs can be uploaded into it
+    private boolean textureStale;
+
+    /**
+     * Create a DynamicFontAtlas that adds new glyphs at most every 100 milliseconds
+     */
+    public DynamicFontAtlas() {
+        this(100);
+    }
+
+    /**
+     * Create a DynamicFontAtlas
+     *
+     * @param rebuildIntervalMillis The minimum time between adding two batches of glyphs, new glyphs are batched in between
+     */
+    public DynamicFontAtlas(long rebuildIntervalMillis) {
+        this.rebuildIntervalNanos = TimeUnit.MILLISECONDS.toNanos(rebuildIntervalMillis);
+        this.rasterizer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Font Rasterizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int c = FIRST_PRINTABLE; c <= LAST_ASCII; c++) {
+            requested.set(c);
+        }
+    }
+
+    /**
+     * Adds a font with printable ASCII and the given glyph ranges loaded, the texture has to be recreated afterwards.
+     * Glyphs already requested by other fonts are rasterized for it in the background.
+     *
+     * @param atlas       The atlas to add the font to.
+     * @param alias       The alias for the font.
+     * @param fontPath    The file path of the font.
+     * @param fontSize    The size of the font.
+     * @param glyphRanges Additional glyph ranges to load up front, or null.
+     */
+    public void addFont(ImFontAtlas atlas, String alias, String fontPath, float fontSize, short[] glyphRanges) {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(Paths.get(fontPath), StandardOpenOption.READ)) {
+            data = ByteBuffer.allocateDirect((int) channel.size());
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // Keep reading until the whole file is in memory
+            }
+            data.flip();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read font " + fontPath, e);
+        }
+        addFont(atlas, alias, data, fontSize, glyphRanges);
+    }
+
+    /**
+     * Adds a font from font data already in memory, see {@link #addFont(ImFontAtlas, String, String, float, short[])}.
+     *
+     * @param atlas       The atlas to add the font to.
+     * @param alias       The alias for the font.
+     * @param fontData    The contents of the font file.
+     * @param fontSize    The size of the font.
+     * @param glyphRanges Additional glyph ranges to load up front, or null.
+     */
+    public void addFont(ImFontAtlas atlas, String alias, byte[] fontData, float fontSize, short[] glyphRanges) {
+        ByteBuffer data = ByteBuffer.allocateDirect(fontData.length);
+        data.put(fontData).flip();
+        addFont(atlas, alias, data, fontSize, glyphRanges);
+    }
+
+    private void addFont(ImFontAtlas atlas, String alias, ByteBuffer data, float fontSize, short[] glyphRanges) {
+        DynamicFont font = new DynamicFont(alias, fontSize, data);
+        if (!stbtt_InitFont(font.info, data)) {
+            throw new RuntimeException("Failed to load font " + alias);
+        }
+
+        BitSet initial = new BitSet(0x10000);
+        initial.set(FIRST_PRINTABLE, LAST_ASCII + 1);
+        if (glyphRanges != null) {
+            for (int r = 0; r + 1 < glyphRanges.length && glyphRanges[r] != 0; r += 2) {
+                initial.set(glyphRanges[r] & 0xFFFF, (glyphRanges[r + 1] & 0xFFFF) + 1);
+            }
+            requested.or(initial);
+        }
+        font.rasterize(initial, font.glyphs, ByteBuffer.allocateDirect(64 * 64));
+        for (Glyph glyph : font.glyphs) {
+            place(glyph);
+        }
+
+        BitSet remaining = (BitSet) requested.clone();
+        remaining.andNot(initial);
+        if (!remaining.isEmpty()) {
+            submit(new DynamicFont[]{font}, remaining);
+        }
+
+        fonts.add(font);
+        rebuild(atlas);
+        // ImGui has a new host font whose rectangles move the layout
+        textureStale = true;
+    }
+
+    /**
+     * Records the characters of a piece of text, scheduling any the atlas doesn't have yet.
+     *
+     * @param text The text about to be drawn.
+     */
+    public void recordText(String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= FIRST_PRINTABLE && !requested.get(c) && !Character.isSurrogate(c)) {
+                requested.set(c);
+                pending.set(c);
+            }
+        }
+    }
+
+    /**
+     * Schedules pending glyphs and adds rasterized glyphs once they are ready. When the texture can be kept the new
+     * glyphs are uploaded into it right away, so call this on the render thread with the window's OpenGL context
+     * current. Call this between frames, never between {@code ImGui.newFrame()} and {@code ImGui.render()}.
+     *
+     * @param atlas The atlas the fonts were added to.
+     * @return true if the texture has to be recreated, then call {@link #onAtlasBuilt(ImFontAtlas)} afterwards
+     */
+    public boolean update(ImFontAtlas atlas) {
+        if (!pending.isEmpty() && !fonts.isEmpty()) {
+            submit(fonts.toArray(new DynamicFont[0]), (BitSet) pending.clone());
+            pending.clear();
+        }
+
+        long now = System.nanoTime();
+        if (!finished.isEmpty() && now - lastRebuild >= rebuildIntervalNanos) {
+            Glyph glyph;
+            while ((glyph = finished.poll()) != null) {
+                glyph.font.glyphs.add(glyph);
+                place(glyph);
+            }
+            rebuild(atlas);
+            lastRebuild = now;
+
+            if (!textureStale) {
+                atlas.build();
+                if (applyLayout(atlas)) {
+                    textureStale = true;
+                } else {
+                    uploadDirtyRows(atlas.getTexID());
+                }
+            }
+        }
+        return textureStale;
+    }
+
+    /**
+     * Checks if {@link #update(ImFontAtlas)} will add glyphs or needs the texture recreated, so callers can skip
+     * timing frames with nothing to do
+     *
+     * @return true if the next update has work to do
+     */
+    public boolean hasPendingBuild() {
+        return textureStale || (!finished.isEmpty() && System.nanoTime() - lastRebuild >= rebuildIntervalNanos);
+    }
+
+    /**
+     * Places the glyphs and uploads the page once the atlas has been built and its texture created.
+     *
+     * @param atlas The atlas the fonts were added to.
+     */
+    public void onAtlasBuilt(ImFontAtlas atlas) {
+        if (fonts.isEmpty()) {
+            return;
+        }
+        applyLayout(atlas);
+        // The new texture has nothing in the page yet, only the rows holding glyphs are needed
+        dirtyTop = 0;
+        dirtyBottom = Math.max(dirtyBottom, shelfY + shelfHeight);
+        uploadDirtyRows(atlas.getTexID());
+        textureStale = false;
+    }
+
+    /**
+     * Gets the number of glyphs currently in the atlas, across all fonts.
+     *
+     * @return The glyph count
+     */
+    public int getGlyphCount() {
+        int count = 0;
+        for (DynamicFont font : fonts) {
+            count += font.glyphs.size();
+        }
+        return count;
+    }
+
+    /**
+     * Stops the background rasterizer
+     */
+    public void shutdown() {
+        rasterizer.shutdownNow();
+    }
+
+    private void submit(DynamicFont[] targets, BitSet codepoints) {
+        rasterizer.execute(() -> {
+            ByteBuffer scratch = ByteBuffer.allocateDirect(64 * 64);
+            List<Glyph> glyphs = new ArrayList<>();
+            for (DynamicFont font : targets) {
+                scratch = font.rasterize(codepoints, glyphs, scratch);
+            }
+            finished.addAll(glyphs);
+        });
+    }
+
+    /**
+     * Copies a glyph into the next free spot of the page, doubling the page height when it is full
+     */
+    private void place(Glyph glyph) {
+        if (glyph.alpha == null) {
+            return;
+        }
+        if (glyph.width + GLYPH_PADDING > PAGE_WIDTH) {
+            throw new IllegalStateException("Glyph " + glyph.codepoint + " is wider than the font atlas page");
+        }
+        if (shelfX + glyph.width + GLYPH_PADDING > PAGE_WIDTH) {
+            shelfY += shelfHeight;
+            shelfX = 0;
+            shelfHeight = 0;
+        }
+        while (shelfY + glyph.height + GLYPH_PADDING > pageHeight) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(page.capacity() * 2);
+            larger.put(page);
+            larger.clear();
+            page = larger;
+            pageHeight *= 2;
+            // ImGui has to reserve a larger page, which needs a larger texture
+            textureStale = true;
+        }
+
+        glyph.pageX = shelfX;
+        glyph.pageY = shelfY;
+        shelfX += glyph.width + GLYPH_PADDING;
+        shelfHeight = Math.max(shelfHeight, glyph.height + GLYPH_PADDING);
+
+        for (int row = 0; row < glyph.height; row++) {
+            int offset = ((glyph.pageY + row) * PAGE_WIDTH + glyph.pageX) * 4;
+            for (int column = 0; column < glyph.width; column++) {
+                page.put(offset++, (byte) 0xFF).put(offset++, (byte) 0xFF).put(offset++, (byte) 0xFF)
+                        .put(offset++, glyph.alpha[row * glyph.width + column]);
+            }
+        }
+        dirtyTop = Math.min(dirtyTop, glyph.pageY);
+        dirtyBottom = Math.max(dirtyBottom, glyph.pageY + glyph.height);
+    }
+
+    /**
+     * Reads where ImGui put the page and points every glyph at its pixels in it
+     *
+     * @return true if the page, the texture size or any of ImGui's own pixels moved since the last build
+     */
+    private boolean applyLayout(ImFontAtlas atlas) {
+        ImFontGlyph pageGlyph = fonts.get(0).imFont.findGlyphNoFallback(PAGE_CODEPOINT);
+        int width = Math.round(PAGE_WIDTH / (pageGlyph.getU1() - pageGlyph.getU0()));
+        int height = Math.round(pageHeight / (pageGlyph.getV1() - pageGlyph.getV0()));
+        int x = Math.round(pageGlyph.getU0() * width);
+        int y = Math.round(pageGlyph.getV0() * height);
+        pageGlyph.setVisible(0);
+
+        // The packer is expected to put everything in the same spot, verify it rather than trust it: ImGui doesn't
+        // draw into custom rects, so its pixels only match the old texture if its own rects didn't move
+        ByteBuffer pixels = atlas.getTexDataAsAlpha8(pixelsWidth, pixelsHeight);
+        crc.reset();
+        crc.update(pixels);
+        pixels.rewind();
+        long checksum = crc.getValue();
+
+        boolean moved = x != pageX || y != pageY || width != textureWidth || height != textureHeight
+                || pixelsWidth.get() != width || pixelsHeight.get() != height || checksum != textureChecksum;
+        textureChecksum = checksum;
+        pageX = x;
+        pageY = y;
+        textureWidth = width;
+        textureHeight = height;
+
+        for (DynamicFont font : fonts) {
+            font.imFont.setAscent(font.ascent);
+            font.imFont.setDescent(font.descent);
+
+            for (Glyph glyph : font.glyphs) {
+                ImFontGlyph imGlyph = font.imFont.findGlyphNoFallback(glyph.codepoint);
+                if (imGlyph.ptr == 0) {
+                    continue;
+                }
+
+                // ImGui only knows the one texel rect, move the glyph to where STB placed it and to its pixels
+                imGlyph.setX0(glyph.x0);
+                imGlyph.setY0(glyph.y0);
+                imGlyph.setX1(glyph.x0 + glyph.width);
+                imGlyph.setY1(glyph.y0 + glyph.height);
+                if (glyph.alpha == null) {
+                    imGlyph.setVisible(0);
+                    continue;
+                }
+                imGlyph.setU0((float) (pageX + glyph.pageX) / width);
+                imGlyph.setV0((float) (pageY + glyph.pageY) / height);
+                imGlyph.setU1((float) (pageX + glyph.pageX + glyph.width) / width);
+                imGlyph.setV1((float) (pageY + glyph.pageY + glyph.height) / height);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Uploads the page rows changed since the last upload in one call
+     */
+    private void uploadDirtyRows(int texture) {
+        if (dirtyTop >= dirtyBottom) {
+            return;
+        }
+        int previousTexture = glGetInteger(GL_TEXTURE_BINDING_2D);
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+
+        page.limit(dirtyBottom * PAGE_WIDTH * 4);
+        page.position(dirtyTop * PAGE_WIDTH * 4);
+        glTexSubImage2D(GL_TEXTURE_2D, 0, pageX, pageY + dirtyTop, PAGE_WIDTH, dirtyBottom - dirtyTop,
+                GL_RGBA, GL_UNSIGNED_BYTE, page);
+        page.clear();
+
+        glBindTexture(GL_TEXTURE_2D, previousTexture);
+        dirtyTop = Integer.MAX_VALUE;
+        dirtyBottom = 0;
+    }
+
+    /**
+     * Hands ImGui the fonts, a one texel rect per glyph so it learns the codepoints, and the page
+     */
+    private void rebuild(ImFontAtlas atlas) {
+        atlas.clear();
+        atlas.setTexDesiredWidth(PAGE_WIDTH + TEXTURE_EXTRA_WIDTH);
+        for (DynamicFont font : fonts) {
+            // ProggyClean is only a host for the custom glyphs, so the TTF never has to be handed to ImGui
+            ImFontConfig config = new ImFontConfig();
+            config.setSizePixels(font.size);
+            config.setGlyphRanges(HOST_RANGES);
+            font.imFont = atlas.addFontDefault(config);
+            config.destroy();
+
+            for (Glyph glyph : font.glyphs) {
+                atlas.addCustomRectFontGlyph(font.imFont, (short) glyph.codepoint, 1, 1, glyph.advanceX);
+            }
+            GuiBuilder.putFont(font.alias, font.imFont);
+        }
+        // The tallest rect, so ImGui packs it first and it lands in the same spot every build
+        atlas.addCustomRectFontGlyph(fonts.get(0).imFont, PAGE_CODEPOINT, PAGE_WIDTH, pageHeight, 0);
+    }
+
+    private static final class DynamicFont {
+        final String alias;
+        final float size;
+        final ByteBuffer data;
+        final STBTTFontinfo info = STBTTFontinfo.create();
+        final List<Glyph> glyphs = new ArrayList<>();
+        float scale;
+        float ascent;
+        float descent;
+        ImFont imFont;
+
+        DynamicFont(String alias, float size, ByteBuffer data) {
+            this.alias = alias;
+            this.size = size;
+            this.data = data;
+        }
+
+        ByteBuffer rasterize(BitSet codepoints, List<Glyph> out, ByteBuffer scratch) {
+            if (scale == 0) {
+                // Same metrics ImGui uses when it rasterizes a TTF itself
+                scale = stbtt_ScaleForPixelHeight(info, size);
+                int[] fontAscent = new int[1];
+                int[] fontDescent = new int[1];
+                int[] lineGap = new int[1];
+                stbtt_GetFontVMetrics(info, fontAscent, fontDescent, lineGap);
+                ascent = (float) Math.floor(fontAscent[0] * scale + (fontAscent[0] > 0 ? 1 : -1));
+                descent = (float) Math.floor(fontDescent[0] * scale + (fontDescent[0] > 0 ? 1 : -1));
+            }
+
+            int[] advance = new int[1];
+            int[] bearing = new int[1];
+            int[] x0 = new int[1];
+            int[] y0 = new int[1];
+            int[] x1 = new int[1];
+            int[] y1 = new int[1];
+            for (int c = codepoints.nextSetBit(0); c >= 0; c = codepoints.nextSetBit(c + 1)) {
+                int index = stbtt_FindGlyphIndex(info, c);
+                if (index == 0) {
+                    continue;
+                }
+                stbtt_GetGlyphHMetrics(info, index, advance, bearing);
+                stbtt_GetGlyphBitmapBox(info, index, scale, scale, x0, y0, x1, y1);
+
+                int width = x1[0] - x0[0];
+                int height = y1[0] - y0[0];
+                byte[] alpha = null;
+                if (width > 0 && height > 0) {
+                    if (scratch.capacity() < width * height) {
+                        scratch = ByteBuffer.allocateDirect(width * height);
+                    }
+                    scratch.clear();
+                    stbtt_MakeGlyphBitmap(info, scratch, width, height, width, scale, scale, index);
+                    alpha = new byte[width * height];
+                    scratch.get(alpha);
+                }
+                out.add(new Glyph(this, c, width, height, advance[0] * scale,
+                        x0[0], y0[0] + Math.round(ascent), alpha));
+            }
+            return scratch;
+        }
+    }
+
+    private static final class Glyph {
+        final DynamicFont font;
+        final int codepoint;
+        final int width;
+        final int height;
+        final float advanceX;
+        final float x0;
+        final float y0;
+        final byte[] alpha;
+        // Where the glyph's pixels are in the page
+        int pageX;
+        int pageY;
+
+        Glyph(DynamicFont font, int codepoint, int width, int height, float advanceX, float x0, float y0, byte[] alpha) {
+            this.font = font;
+            this.codepoint = codepoint;
+            this.width = width;
+            this.height = height;
+            this.advanceX = advanceX;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.alpha = alpha;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.strubium.windowmanager.imgui;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A control bound to one field of a {@link DataModel}.
+ * <p>
+ * The field is looked up once and turned into method handles cast to {@code boolean}, {@code double} or
+ * {@code String}, so reading and writing it every frame doesn't go through reflection or box numbers.
+ *
+ * @author strubium
+ */
+final class FieldBinding {
+    private final String bind;
+    // Typed as Object so invokeExact matches the handles' (Object) parameter
+    private final Object model;
+    private final DataModel versioned;
+    private final AtomicLong fieldVersion;
+    private final Class<?> type;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private long seenVersion = -1;
+    private long seenFieldVersion = -1;
+
+    private FieldBinding(String bind, DataModel model, Field field, Class<?> controlType) throws IllegalAccessException {
+        this.bind = bind;
+        this.model = model;
+        this.versioned = model;
+        this.fieldVersion = model.getFieldVersion(field.getName());
+
+        Class<?> fieldType = field.getType();
+        if (fieldType == boolean.class || fieldType == String.class) {
+            type = fieldType;
+        } else if (fieldType.isPrimitive() && fieldType != char.class) {
+            type = double.class;
+        } else {
+            throw new IllegalArgumentException("Can't bind " + bind + ", fields must be boolean, a number or String");
+        }
+        // Text shows any field, a checkbox also a number as zero or not, a slider or select only a number
+        if (controlType == boolean.class && type == String.class) {
+            throw new IllegalArgumentException("Can't bind " + bind + " to a checkbox, the field must be boolean or a number");
+        }
+        if (controlType == double.class && type != double.class) {
+            throw new IllegalArgumentException("Can't bind " + bind + " to a slider or select, the field must be a number");
+        }
+
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        // explicitCastArguments also narrows, so a double from a slider can be written to an int field
+        getter = MethodHandles.explicitCastArguments(lookup.unreflectGetter(field), MethodType.methodType(type, Object.class));
+        setter = MethodHandles.explicitCastArguments(lookup.unreflectSetter(field), MethodType.methodType(void.class, Object.class, type));
+    }
+
+    /**
+     * Binds to a field of a registered model
+     *
+     * @param bind The binding, as "model.field"
+     * @param model The model the first part names
+     * @param controlType What the control reads and writes: {@code boolean.class} for a checkbox, {@code double.class}
+     *                    for a slider or select, {@code String.class} for text
+     * @return The binding
+     * @throws IllegalArgumentException if the field doesn't exist or can't be bound to the control
+     */
+    static FieldBinding resolve(String bind, DataModel model, Class<?> controlType) {
+        String fieldName = bind.substring(bind.indexOf('.') + 1);
+        for (Class<?> c = model.getClass(); c != DataModel.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(fieldName);
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                    throw new IllegalArgumentException("Can't bind " + bind + ", the field is static or final");
+                }
+                return new FieldBinding(bind, model, field, controlType);
+            } catch (NoSuchFieldException e) {
+                // Try the superclass
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Can't bind " + bind, e);
+            }
+        }
+        throw new IllegalArgumentException("Can't bind " + bind + ", " + model.getClass().getName() + " has no field " + fieldName);
+    }
+
+    String getBind() {
+        return bind;
+    }
+
+    DataModel getModel() {
+        return versioned;
+    }
+
+    /**
+     * @return true if the field or the whole model was marked changed since the control last read or wrote it, the
+     * next read catches up
+     */
+    boolean isStale() {
+        return fieldVersion.get() != seenFieldVersion || versioned.getVersion() != seenVersion;
+    }
+
+    private void seen() {
+        seenVersion = versioned.getVersion();
+        seenFieldVersion = fieldVersion.get();
+    }
+
+    boolean getBoolean() {
+        seen();
+        if (type != boolean.class) {
+            return getDouble() != 0;
+        }
+        try {
+            return (boolean) getter.invokeExact(model);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't read " + bind, e);
+        }
+    }
+
+    double getDouble() {
+        seen();
+        if (type != double.class) {
+            throw new IllegalStateException(bind + " isn't a number");
+        }
+        try {
+            return (double) getter.invokeExact(model);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't read " + bind, e);
+        }
+    }
+
+    String getString() {
+        seen();
+        try {
+            if (type == String.class) {
+                String value = (String) getter.invokeExact(model);
+                return value != null ? value : "";
+            }
+            // Numbers and booleans can be shown in a text input too
+            return type == double.class ? String.valueOf((double) getter.invokeExact(model))
+                    : String.valueOf((boolean) getter.invokeExact(model));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't read " + bind, e);
+        }
+    }
+
+    void setBoolean(boolean value) {
+        if (type == String.class) {
+            throw new IllegalStateException(bind + " isn't a boolean");
+        }
+        try {
+            if (type == boolean.class) {
+                setter.invokeExact(model, value);
+            } else {
+                setter.invokeExact(model, value ? 1.0 : 0.0);
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't write " + bind, e);
+        }
+        changed();
+    }
+
+    void setDouble(double value) {
+        if (type != double.class) {
+            throw new IllegalStateException(bind + " isn't a number");
+        }
+        try {
+            setter.invokeExact(model, value);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't write " + bind, e);
+        }
+        changed();
+    }
+
+    void setString(String value) {
+        try {
+            if (type == String.class) {
+                setter.invokeExact(model, value);
+            } else if (type == double.class) {
+                try {
+                    setter.invokeExact(model, Double.parseDouble(value.trim()));
+                } catch (NumberFormatException e) {
+                    // Keep the old value while the text isn't a number
+                    return;
+                }
+            } else {
+                setter.invokeExact(model, Boolean.parseBoolean(value.trim()));
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't write " + bind, e);
+        }
+        changed();
+    }
+
+    private void changed() {
+        fieldVersion.incrementAndGet();
+        // This control already shows the value, only the others bound to the field need to catch up
+        seen();
+    }
+}
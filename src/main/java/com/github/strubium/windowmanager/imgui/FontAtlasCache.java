@@ -0,0 +1,381 @@
+package com.github.strubium.windowmanager.imgui;
+
+import imgui.ImFont;
+import imgui.ImFontAtlas;
+import imgui.ImFontConfig;
+import imgui.ImFontGlyph;
+import imgui.ImGui;
+import imgui.type.ImInt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Caches rasterized font glyphs on disk so later startups don't have to rasterize them again.
+ * <p>
+ * Entries are keyed by a hash of the font file, the font size, the requested glyph ranges, the rasterizer settings of
+ * the font config and the ImGui version. On a miss the font is rasterized as usual and its glyphs are written to the
+ * cache once the atlas is built. On a hit the glyphs are read back through a memory-mapped file and registered as
+ * custom atlas rectangles, so building the atlas only has to pack them. Their pixels are then uploaded straight into
+ * the font texture. {@link #getHits()}, {@link #getMisses()} and {@link #getLastBuildNanos()} show what the cache saved.
+ *
+ * @author strubium
+ */
+public class FontAtlasCache {
+    private static final int MAGIC = 0x4A574643; // "JWFC"
+    private static final int VERSION = 1;
+    private static final int GLYPH_HEADER_BYTES = 3 * 4 + 5 * 4;
+    // The host font only rasterizes a space, every other glyph comes from the cache
+    private static final short[] HOST_RANGES = {0x20, 0x20, 0};
+
+    private final Path cacheDirectory;
+    private final List<Entry> entries = new ArrayList<>();
+    private int hits;
+    private int misses;
+    private long lastBuildNanos;
+
+    /**
+     * Create a FontAtlasCache
+     *
+     * @param cacheDirectory The directory to store cached glyphs in, created if missing
+     */
+    public FontAtlasCache(String cacheDirectory) {
+        this.cacheDirectory = Paths.get(cacheDirectory);
+    }
+
+    /**
+     * Adds a font to the atlas with the default font config, using cached glyphs when they match the font file,
+     * size and glyph ranges.
+     *
+     * @param atlas       The atlas to add the font to.
+     * @param fontPath    The file path of the font.
+     * @param fontSize    The size of the font.
+     * @param glyphRanges The glyph ranges to load, or null for the default ranges.
+     * @return The added font, or null if ImGui could not load it.
+     */
+    public ImFont addFont(ImFontAtlas atlas, String fontPath, float fontSize, short[] glyphRanges) {
+        ImFontConfig config = new ImFontConfig();
+        try {
+            return addFont(atlas, fontPath, fontSize, glyphRanges, config);
+        } finally {
+            config.destroy();
+        }
+    }
+
+    /**
+     * Adds a font to the atlas with a font config, using cached glyphs when they match the font file, size, glyph
+     * ranges and the rasterizer settings of the config.
+     *
+     * @param atlas       The atlas to add the font to.
+     * @param fontPath    The file path of the font.
+     * @param fontSize    The size of the font.
+     * @param glyphRanges The glyph ranges to load, or null for the default ranges.
+     * @param config      The font config, its oversampling, pixel snapping and other rasterizer settings are part of the key.
+     * @return The added font, or null if ImGui could not load it.
+     */
+    public ImFont addFont(ImFontAtlas atlas, String fontPath, float fontSize, short[] glyphRanges, ImFontConfig config) {
+        short[] ranges = glyphRanges != null ? glyphRanges : atlas.getGlyphRangesDefault();
+
+        Path cacheFile;
+        try {
+            cacheFile = cacheDirectory.resolve(cacheKey(Paths.get(fontPath), fontSize, ranges, config) + ".glyphs");
+        } catch (IOException e) {
+            // Can't hash the font, let ImGui load (and report on) it directly
+            return atlas.addFontFromFileTTF(fontPath, fontSize, config, ranges);
+        }
+
+        CachedGlyphs cached = Files.isRegularFile(cacheFile) ? readCache(cacheFile) : null;
+        ImFont font;
+        if (cached != null) {
+            font = atlas.addFontFromFileTTF(fontPath, fontSize, config, HOST_RANGES);
+            if (font == null || font.ptr == 0) {
+                return null;
+            }
+            for (int i = 0; i < cached.count; i++) {
+                atlas.addCustomRectFontGlyph(font, (short) cached.codepoints[i], Math.max(cached.widths[i], 1),
+                        Math.max(cached.heights[i], 1), cached.advances[i]);
+            }
+            hits++;
+        } else {
+            font = atlas.addFontFromFileTTF(fontPath, fontSize, config, ranges);
+            if (font == null || font.ptr == 0) {
+                return null;
+            }
+            misses++;
+        }
+
+        entries.add(new Entry(font, ranges, cacheFile, cached));
+        return font;
+    }
+
+    /**
+     * Finishes the cached fonts once the atlas has been built and its texture uploaded.
+     * Newly rasterized fonts are written to the cache, cached fonts get their glyph pixels uploaded.
+     *
+     * @param atlas The atlas the fonts were added to.
+     */
+    public void onAtlasBuilt(ImFontAtlas atlas) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        ImInt width = new ImInt();
+        ImInt height = new ImInt();
+        ByteBuffer pixels = atlas.getTexDataAsRGBA32(width, height);
+        boolean patched = false;
+
+        for (Entry entry : entries) {
+            if (entry.cached == null) {
+                if (!entry.written) {
+                    writeCache(entry, pixels, width.get(), height.get());
+                    entry.written = true;
+                }
+            } else {
+                patchGlyphs(entry, pixels, width.get(), height.get());
+                patched = true;
+            }
+        }
+
+        if (patched) {
+            int previousTexture = glGetInteger(GL_TEXTURE_BINDING_2D);
+            glBindTexture(GL_TEXTURE_2D, atlas.getTexID());
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+            glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, width.get(), height.get(), GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+            glBindTexture(GL_TEXTURE_2D, previousTexture);
+        }
+    }
+
+    /**
+     * Forgets every font added so far, call this after clearing the fonts of the atlas.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of fonts that were loaded from the cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of fonts that had to be rasterized
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets how long the last atlas build took, from building the atlas to the cached glyphs being uploaded. Compare it
+     * between a startup with an empty cache directory and one with a filled cache to see what the cache saves.
+     *
+     * @return The time in nanoseconds, or 0 before the first build
+     */
+    public long getLastBuildNanos() {
+        return lastBuildNanos;
+    }
+
+    /**
+     * Records how long an atlas build took, called by {@link ImguiHandler#updateFonts()}
+     *
+     * @param nanos The time in nanoseconds
+     */
+    void recordBuildTime(long nanos) {
+        lastBuildNanos = nanos;
+    }
+
+    private void patchGlyphs(Entry entry, ByteBuffer pixels, int texWidth, int texHeight) {
+        CachedGlyphs cached = entry.cached;
+        for (int i = 0; i < cached.count; i++) {
+            ImFontGlyph glyph = entry.font.findGlyphNoFallback(cached.codepoints[i]);
+            if (glyph.ptr == 0) {
+                continue;
+            }
+
+            // The custom rect glyph is sized in texels, restore the original (possibly oversampled) quad
+            glyph.setX0(cached.quads[i * 4]);
+            glyph.setY0(cached.quads[i * 4 + 1]);
+            glyph.setX1(cached.quads[i * 4 + 2]);
+            glyph.setY1(cached.quads[i * 4 + 3]);
+
+            int w = cached.widths[i];
+            int h = cached.heights[i];
+            if (w == 0 || h == 0) {
+                glyph.setVisible(0);
+                continue;
+            }
+
+            int x = Math.round(glyph.getU0() * texWidth);
+            int y = Math.round(glyph.getV0() * texHeight);
+            int src = cached.pixelOffsets[i];
+            for (int row = 0; row < h; row++) {
+                int dst = ((y + row) * texWidth + x) * 4;
+                for (int col = 0; col < w; col++) {
+                    pixels.put(dst++, (byte) 0xFF);
+                    pixels.put(dst++, (byte) 0xFF);
+                    pixels.put(dst++, (byte) 0xFF);
+                    pixels.put(dst++, cached.data.get(src++));
+                }
+            }
+        }
+    }
+
+    private void writeCache(Entry entry, ByteBuffer pixels, int texWidth, int texHeight) {
+        List<int[]> rects = new ArrayList<>();
+        List<float[]> metrics = new ArrayList<>();
+        int size = 12;
+
+        for (int r = 0; r + 1 < entry.ranges.length && entry.ranges[r] != 0; r += 2) {
+            int first = entry.ranges[r] & 0xFFFF;
+            int last = entry.ranges[r + 1] & 0xFFFF;
+            for (int c = first; c <= last; c++) {
+                if (c == HOST_RANGES[0]) {
+                    continue;
+                }
+                ImFontGlyph glyph = entry.font.findGlyphNoFallback(c);
+                if (glyph.ptr == 0) {
+                    continue;
+                }
+                int x = Math.round(glyph.getU0() * texWidth);
+                int y = Math.round(glyph.getV0() * texHeight);
+                int w = glyph.getVisible() != 0 ? Math.round((glyph.getU1() - glyph.getU0()) * texWidth) : 0;
+                int h = glyph.getVisible() != 0 ? Math.round((glyph.getV1() - glyph.getV0()) * texHeight) : 0;
+                rects.add(new int[]{c, x, y, w, h});
+                metrics.add(new float[]{glyph.getAdvanceX(), glyph.getX0(), glyph.getY0(), glyph.getX1(), glyph.getY1()});
+                size += GLYPH_HEADER_BYTES + w * h;
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(rects.size());
+        for (int i = 0; i < rects.size(); i++) {
+            int[] rect = rects.get(i);
+            float[] metric = metrics.get(i);
+            out.putInt(rect[0]).putInt(rect[3]).putInt(rect[4]);
+            for (float value : metric) {
+                out.putFloat(value);
+            }
+            for (int row = 0; row < rect[4]; row++) {
+                int src = ((rect[2] + row) * texWidth + rect[1]) * 4 + 3;
+                for (int col = 0; col < rect[3]; col++) {
+                    out.put(pixels.get(src));
+                    src += 4;
+                }
+            }
+        }
+        out.flip();
+
+        try {
+            Files.createDirectories(cacheDirectory);
+            Path temp = Files.createTempFile(cacheDirectory, "font", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            try {
+                Files.move(temp, entry.cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry.cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write font cache " + entry.cacheFile + ": " + e.getMessage());
+        }
+    }
+
+    private static CachedGlyphs readCache(Path cacheFile) {
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.remaining() < 12 || data.getInt() != MAGIC || data.getInt() != VERSION) {
+                return null;
+            }
+
+            CachedGlyphs cached = new CachedGlyphs(data.getInt(), data);
+            for (int i = 0; i < cached.count; i++) {
+                cached.codepoints[i] = data.getInt();
+                cached.widths[i] = data.getInt();
+                cached.heights[i] = data.getInt();
+                cached.advances[i] = data.getFloat();
+                for (int q = 0; q < 4; q++) {
+                    cached.quads[i * 4 + q] = data.getFloat();
+                }
+                cached.pixelOffsets[i] = data.position();
+                data.position(data.position() + cached.widths[i] * cached.heights[i]);
+            }
+            return cached;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or truncated cache, rebuild it
+            return null;
+        }
+    }
+
+    private static String cacheKey(Path fontPath, float fontSize, short[] ranges, ImFontConfig config) throws IOException {
+        // Everything that changes the rasterized pixels or the glyph quads, a newer ImGui may rasterize differently
+        String settings = ImGui.getVersion() + "|" + config.getOversampleH() + "|" + config.getOversampleV()
+                + "|" + config.getPixelSnapH() + "|" + config.getRasterizerMultiply()
+                + "|" + config.getGlyphOffsetX() + "|" + config.getGlyphOffsetY()
+                + "|" + config.getGlyphExtraSpacingX() + "|" + config.getGlyphMinAdvanceX()
+                + "|" + config.getFontBuilderFlags();
+
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(fontPath, StandardOpenOption.READ)) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return String.format("%08x-%d-%08x-%08x-%08x", crc.getValue(), channel.size(),
+                    Float.floatToIntBits(fontSize), Arrays.hashCode(ranges), settings.hashCode());
+        }
+    }
+
+    private static final class Entry {
+        final ImFont font;
+        final short[] ranges;
+        final Path cacheFile;
+        final CachedGlyphs cached;
+        boolean written;
+
+        Entry(ImFont font, short[] ranges, Path cacheFile, CachedGlyphs cached) {
+            this.font = font;
+            this.ranges = ranges;
+            this.cacheFile = cacheFile;
+            this.cached = cached;
+        }
+    }
+
+    private static final class CachedGlyphs {
+        final int count;
+        final ByteBuffer data;
+        final int[] codepoints;
+        final int[] widths;
+        final int[] heights;
+        final float[] advances;
+        final float[] quads;
+        final int[] pixelOffsets;
+
+        CachedGlyphs(int count, ByteBuffer data) {
+            this.count = count;
+            this.data = data;
+            this.codepoints = new int[count];
+            this.widths = new int[count];
+            this.heights = new int[count];
+            this.advances = new float[count];
+            this.quads = new float[count * 4];
+            this.pixelOffsets = new int[count];
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.github.strubium.windowmanager.imgui;
 
+import com.github.strubium.windowmanager.asset.CachedTexture;
+import com.github.strubium.windowmanager.asset.TextureCache;
+import com.github.strubium.windowmanager.metrics.FrameMetric;
+import com.github.strubium.windowmanager.metrics.FrameMetrics;
+import com.github.strubium.windowmanager.metrics.Histogram;
+import imgui.ImDrawList;
 import imgui.ImFont;
 import imgui.ImFontAtlas;
 import imgui.ImGui;
 import imgui.ImGuiIO;
+import imgui.ImGuiInputTextCallbackData;
+import imgui.callback.ImGuiInputTextCallback;
+import imgui.flag.ImGuiCol;
+import imgui.flag.ImGuiCond;
+import imgui.flag.ImGuiInputTextFlags;
+import imgui.flag.ImGuiTableFlags;
+import imgui.flag.ImGuiWindowFlags;
 import imgui.type.ImBoolean;
 import imgui.type.ImFloat;
 import imgui.type.ImInt;
+import imgui.type.ImString;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 
@@ -19,6 +35,68 @@ import java.util.Map;
 public class GuiBuilder {
     private static final Map<String, ImFont> fonts = new HashMap<>();
     private static ImFont currentFont;
+    private static FontAtlasCache fontCache;
+    private static DynamicFontAtlas dynamicFonts;
+    private final float[] plotRange = new float[2];
+    private final CharacterLimit characterLimit = new CharacterLimit();
+    // The metrics overlay refreshes its table a few times a second so the numbers stay readable
+    private final String[][] metricCells = new String[FrameMetric.values().length][];
+    private final long[] recentFrames = new long[120];
+    private final float[] recentFrameMillis = new float[120];
+    private long metricsRefreshed;
+
+    /**
+     * Sets the cache used to load fonts, fonts set afterwards reuse glyphs rasterized on earlier startups.
+     * Call {@link ImguiHandler#updateFonts()} once the fonts are set to build and upload the atlas.
+     *
+     * @param cache The font cache, or null to rasterize every font on load.
+     */
+    public static void setFontCache(FontAtlasCache cache) {
+        fontCache = cache;
+    }
+
+    /**
+     * Gets the cache used to load fonts.
+     *
+     * @return The font cache, or null if none is set.
+     */
+    public static FontAtlasCache getFontCache() {
+        return fontCache;
+    }
+
+    /**
+     * Sets the dynamic atlas fonts are loaded into, fonts set afterwards only carry the glyphs drawn through this builder.
+     * The dynamic atlas owns the ImGui font atlas and clears it whenever it adds glyphs, so set it before any font
+     * and set every font through it once it is enabled.
+     *
+     * @param atlas The dynamic font atlas, or null to load fonts with their full glyph ranges.
+     * @throws IllegalStateException if fonts were already set without a dynamic atlas, they would be dropped
+     */
+    public static void setDynamicFonts(DynamicFontAtlas atlas) {
+        if (atlas != null && dynamicFonts == null && !fonts.isEmpty()) {
+            throw new IllegalStateException("Fonts " + fonts.keySet() + " are already set, set the dynamic font atlas before any font");
+        }
+        dynamicFonts = atlas;
+    }
+
+    /**
+     * Gets the dynamic atlas fonts are loaded into.
+     *
+     * @return The dynamic font atlas, or null if none is set.
+     */
+    public static DynamicFontAtlas getDynamicFonts() {
+        return dynamicFonts;
+    }
+
+    static void putFont(String alias, ImFont font) {
+        fonts.put(alias, font);
+    }
+
+    static void trackText(String text) {
+        if (dynamicFonts != null) {
+            dynamicFonts.recordText(text);
+        }
+    }
 
     /**
      * Sets a font for ImGui using a specified alias.
@@ -28,9 +106,53 @@ public class GuiBuilder {
      * @param fontSize The size of the font.
      */
     public static void setFont(String alias, String fontPath, float fontSize) {
+        setFont(alias, fontPath, fontSize, null);
+    }
+
+    /**
+     * Sets a font for ImGui using a specified alias, loading only the given glyph ranges.
+     *
+     * @param alias       The alias for the font.
+     * @param fontPath    The file path of the font.
+     * @param fontSize    The size of the font.
+     * @param glyphRanges The glyph ranges to load (Ex: {@link ImFontAtlas#getGlyphRangesJapanese()}), or null for the defaults.
+     */
+    public static void setFont(String alias, String fontPath, float fontSize, short[] glyphRanges) {
         ImGuiIO io = ImGui.getIO();
         ImFontAtlas fontAtlas = io.getFonts();
-        ImFont font = fontAtlas.addFontFromFileTTF(fontPath, fontSize);
+        if (dynamicFonts != null) {
+            dynamicFonts.addFont(fontAtlas, alias, fontPath, fontSize, glyphRanges);
+            return;
+        }
+
+        ImFont font;
+        if (fontCache != null) {
+            font = fontCache.addFont(fontAtlas, fontPath, fontSize, glyphRanges);
+        } else if (glyphRanges != null) {
+            font = fontAtlas.addFontFromFileTTF(fontPath, fontSize, glyphRanges);
+        } else {
+            font = fontAtlas.addFontFromFileTTF(fontPath, fontSize);
+        }
+        if (font != null) {
+            fonts.put(alias, font);
+        }
+    }
+
+    /**
+     * Sets a font for ImGui using a specified alias, from font data already in memory (Ex: read by an AssetLoader).
+     *
+     * @param alias    The alias for the font.
+     * @param fontData The contents of the font file.
+     * @param fontSize The size of the font.
+     */
+    public static void setFont(String alias, byte[] fontData, float fontSize) {
+        ImFontAtlas fontAtlas = ImGui.getIO().getFonts();
+        if (dynamicFonts != null) {
+            dynamicFonts.addFont(fontAtlas, alias, fontData, fontSize, null);
+            return;
+        }
+
+        ImFont font = fontAtlas.addFontFromMemoryTTF(fontData, fontSize);
         if (font != null) {
             fonts.put(alias, font);
         }
@@ -112,6 +234,7 @@ public class GuiBuilder {
 
     /**
      * Renders a top toolbar menu with submenus and actions.
+     * The lists are checked every frame, {@link #topToolbar(MenuBar)} checks them once and supports shortcuts.
      *
      * @param menuLabels    List of main menu labels.
      * @param subMenuLabels List of lists containing sub-menu labels.
@@ -127,12 +250,14 @@ public class GuiBuilder {
         // Begin the main menu bar
         if (ImGui.beginMainMenuBar()) {
             for (int i = 0; i < menuLabels.size(); i++) {
+                trackText(menuLabels.get(i));
                 if (ImGui.beginMenu(menuLabels.get(i))) {
                     // Render each sub-menu item
                     List<String> subMenu = subMenuLabels.get(i);
                     List<Runnable> actions = subMenuActions.get(i);
 
                     for (int j = 0; j < subMenu.size(); j++) {
+                        trackText(subMenu.get(j));
                         if (ImGui.menuItem(subMenu.get(j))) {
                             // Run the associated action when the sub-menu item is clicked
                             actions.get(j).run();
@@ -147,6 +272,17 @@ public class GuiBuilder {
         return this;
     }
 
+    /**
+     * Renders a top toolbar menu built with {@link MenuBar#compile}.
+     *
+     * @param menuBar The menu bar
+     * @return The current GuiBuilder instance.
+     */
+    public GuiBuilder topToolbar(MenuBar menuBar) {
+        menuBar.render();
+        return this;
+    }
+
     /**
      * Adds a button to the GUI with the specified label and click handler.
      *
@@ -155,6 +291,7 @@ public class GuiBuilder {
      * @return The current instance of the GuiBuilder
      */
     public GuiBuilder addButton(String label, Runnable onClick) {
+        trackText(label);
         if (ImGui.button(label)) {
             onClick.run();
         }
@@ -168,10 +305,217 @@ public class GuiBuilder {
      * @return The current instance of the GuiBuilder  
      */
     public GuiBuilder addText(String text) {
+        trackText(text);
         ImGui.text(text);
         return this;
     }
 
+    /**
+     * Adds an image to the GUI, showing a placeholder until the texture cache has it ready.
+     * Images scrolled out of view are not loaded.
+     *
+     * @param textureCache The cache to load the image through.
+     * @param imagePath The path to the image.
+     * @param width The width to draw the image at, or 0 for the width of the image.
+     * @param height The height to draw the image at, or 0 for the height of the image.
+     * @return The current instance of the GuiBuilder
+     */
+    public GuiBuilder addImage(TextureCache textureCache, String imagePath, float width, float height) {
+        // Size the placeholder like the image once it has been decoded, so the visibility check matches what is drawn
+        CachedTexture known = textureCache.peek(imagePath);
+        boolean sized = known != null && known.getWidth() > 0;
+        float placeholderWidth = width > 0 ? width : sized ? known.getWidth() : 64;
+        float placeholderHeight = height > 0 ? height : sized ? known.getHeight() : 64;
+        if (!ImGui.isRectVisible(placeholderWidth, placeholderHeight)) {
+            ImGui.dummy(placeholderWidth, placeholderHeight);
+            return this;
+        }
+
+        CachedTexture texture = textureCache.request(imagePath);
+        if (texture.isReady()) {
+            ImGui.image(texture.getId(), width > 0 ? width : texture.getWidth(), height > 0 ? height : texture.getHeight());
+        } else {
+            float x = ImGui.getCursorScreenPosX();
+            float y = ImGui.getCursorScreenPosY();
+            int color = ImGui.getColorU32(texture.isFailed() ? ImGuiCol.PlotHistogram : ImGuiCol.FrameBg);
+            ImGui.getWindowDrawList().addRectFilled(x, y, x + placeholderWidth, y + placeholderHeight, color);
+            ImGui.dummy(placeholderWidth, placeholderHeight);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a plot of a series, drawing at most one min/max column per horizontal pixel however many samples are visible.
+     * Scroll over the plot to zoom, drag to pan and double-click to show the whole series.
+     *
+     * @param label The label of the plot, used as its ImGui id.
+     * @param series The samples to plot.
+     * @param view The visible range, kept between frames.
+     * @param width The width of the plot, or 0 to fill the available width.
+     * @param height The height of the plot.
+     * @return The current instance of the GuiBuilder
+     */
+    public GuiBuilder addPlot(String label, PlotSeries series, PlotView view, float width, float height) {
+        float plotWidth = width > 0 ? width : ImGui.getContentRegionAvailX();
+        float x = ImGui.getCursorScreenPosX();
+        float y = ImGui.getCursorScreenPosY();
+        ImGui.invisibleButton(label, plotWidth, height);
+        int columns = (int) plotWidth;
+        if (columns <= 0 || height <= 0 || !ImGui.isItemVisible()) {
+            return this;
+        }
+
+        ImDrawList drawList = ImGui.getWindowDrawList();
+        drawList.addRectFilled(x, y, x + plotWidth, y + height, ImGui.getColorU32(ImGuiCol.FrameBg));
+
+        synchronized (series) {
+            int count = series.size();
+            view.clamp(count);
+            if (ImGui.isItemHovered()) {
+                float wheel = ImGui.getIO().getMouseWheel();
+                if (wheel != 0) {
+                    double anchor = view.getStart() + (ImGui.getIO().getMousePosX() - x) / plotWidth * (view.getEnd() - view.getStart());
+                    view.zoom(anchor, Math.pow(0.8, wheel));
+                }
+                if (ImGui.isMouseDoubleClicked(0)) {
+                    view.reset();
+                }
+            }
+            if (ImGui.isItemActive() && ImGui.isMouseDragging(0)) {
+                view.pan(-ImGui.getIO().getMouseDeltaX() / plotWidth * (view.getEnd() - view.getStart()));
+            }
+            view.clamp(count);
+            if (count == 0) {
+                return this;
+            }
+
+            double start = view.getStart();
+            double samplesPerColumn = (view.getEnd() - start) / columns;
+            float yMin = view.getYMin();
+            float yMax = view.getYMax();
+            if (view.isAutoFitY()) {
+                series.minMax((int) start, Math.min(count, (int) Math.ceil(view.getEnd())), plotRange);
+                yMin = plotRange[0];
+                yMax = plotRange[1];
+            }
+            float yScale = yMax > yMin ? (height - 2) / (yMax - yMin) : 0;
+            float yBase = y + height - 1;
+            int color = ImGui.getColorU32(ImGuiCol.PlotLines);
+
+            drawList.pushClipRect(x, y, x + plotWidth, y + height, true);
+            if (samplesPerColumn <= 1) {
+                // Zoomed in past one sample per pixel, connect the samples directly
+                int first = (int) start;
+                int last = Math.min(count - 1, (int) Math.ceil(view.getEnd()));
+                float previousX = 0;
+                float previousY = 0;
+                for (int i = first; i <= last; i++) {
+                    float sampleX = x + (float) ((i - start) / samplesPerColumn);
+                    float sampleY = yBase - (series.get(i) - yMin) * yScale;
+                    if (i > first) {
+                        drawList.addLine(previousX, previousY, sampleX, sampleY, color);
+                    }
+                    previousX = sampleX;
+                    previousY = sampleY;
+                }
+            } else {
+                // One quad per column spanning the min and max of its samples, joined to the previous column. The
+                // binding can't write shared indices, so a quad is the smallest primitive, but only columns that have
+                // samples are reserved and drawn
+                int filled = (int) Math.min(columns, Math.ceil((count - start) / samplesPerColumn));
+                drawList.primReserve(filled * 6, filled * 4);
+                float previousMin = Float.NaN;
+                float previousMax = Float.NaN;
+                for (int column = 0; column < filled; column++) {
+                    int from = Math.min(count - 1, (int) (start + column * samplesPerColumn));
+                    int to = Math.min(count, Math.max(from + 1, (int) (start + (column + 1) * samplesPerColumn)));
+                    series.minMax(from, to, plotRange);
+                    float min = plotRange[0];
+                    float max = plotRange[1];
+                    if (column > 0) {
+                        min = Math.min(min, previousMax);
+                        max = Math.max(max, previousMin);
+                    }
+                    previousMin = plotRange[0];
+                    previousMax = plotRange[1];
+                    float top = yBase - (max - yMin) * yScale;
+                    float bottom = Math.max(yBase - (min - yMin) * yScale, top + 1);
+                    drawList.primRect(x + column, top, x + column + 1, bottom, color);
+                }
+            }
+            drawList.popClipRect();
+        }
+        return this;
+    }
+
+    /**
+     * Adds an overlay in the top right corner with the {@link FrameMetrics} of recent frames: a plot of the frame
+     * times and the p50, p99 and max of every phase and count.
+     *
+     * @return The current instance of the GuiBuilder
+     */
+    public GuiBuilder addMetricsOverlay() {
+        long now = System.nanoTime();
+        if (metricCells[0] == null || now - metricsRefreshed > 250_000_000L) {
+            metricsRefreshed = now;
+            for (FrameMetric metric : FrameMetric.values()) {
+                Histogram.Snapshot snapshot = FrameMetrics.getHistogram(metric).snapshot();
+                metricCells[metric.ordinal()] = new String[]{
+                        metric.getLabel(),
+                        formatMetric(metric, snapshot.getP50()),
+                        formatMetric(metric, snapshot.getP99()),
+                        formatMetric(metric, snapshot.getMax())
+                };
+            }
+        }
+
+        ImGuiIO io = ImGui.getIO();
+        ImGui.setNextWindowPos(io.getDisplaySizeX() - 10, 10, ImGuiCond.Always, 1, 0);
+        ImGui.setNextWindowBgAlpha(0.75f);
+        int flags = ImGuiWindowFlags.NoDecoration | ImGuiWindowFlags.AlwaysAutoResize | ImGuiWindowFlags.NoSavedSettings
+                | ImGuiWindowFlags.NoFocusOnAppearing | ImGuiWindowFlags.NoNav;
+        if (ImGui.begin("Frame Metrics", flags)) {
+            if (!FrameMetrics.isEnabled()) {
+                ImGui.text("Frame metrics are off");
+            }
+
+            int frames = FrameMetrics.getHistogram(FrameMetric.FRAME).copyRecent(recentFrames);
+            float maxMillis = 0;
+            for (int i = 0; i < frames; i++) {
+                recentFrameMillis[i] = recentFrames[i] / 1_000_000f;
+                maxMillis = Math.max(maxMillis, recentFrameMillis[i]);
+            }
+            ImGui.plotLines("##frameTimes", recentFrameMillis, frames, 0, "Frame time (ms)", 0, Math.max(maxMillis, 1), 0, 40);
+
+            if (ImGui.beginTable("##metrics", 4, ImGuiTableFlags.SizingFixedFit | ImGuiTableFlags.RowBg)) {
+                ImGui.tableSetupColumn("Metric");
+                ImGui.tableSetupColumn("p50");
+                ImGui.tableSetupColumn("p99");
+                ImGui.tableSetupColumn("max");
+                ImGui.tableHeadersRow();
+                for (String[] row : metricCells) {
+                    ImGui.tableNextRow();
+                    for (String cell : row) {
+                        ImGui.tableNextColumn();
+                        ImGui.text(cell);
+                    }
+                }
+                ImGui.endTable();
+            }
+        }
+        ImGui.end();
+        return this;
+    }
+
+    private static String formatMetric(FrameMetric metric, long value) {
+        if (metric.isTime()) {
+            return String.format(Locale.ROOT, "%.2f ms", value / 1_000_000.0);
+        } else if (metric == FrameMetric.ALLOCATED_BYTES) {
+            return String.format(Locale.ROOT, "%.1f KB", value / 1024.0);
+        }
+        return Long.toString(value);
+    }
+
     /**
      * Adds a checkbox to the GUI with the specified label and associated value.
      *
@@ -180,6 +524,7 @@ public class GuiBuilder {
      * @return The current instance of the GuiBuilder  
      */
     public GuiBuilder addCheckbox(String label, ImBoolean value) {
+        trackText(label);
         ImGui.checkbox(label, value);
         return this;
     }
@@ -200,6 +545,10 @@ public class GuiBuilder {
         }
 
         String[] optionsArray = options.toArray(new String[0]);
+        trackText(label);
+        for (String option : optionsArray) {
+            trackText(option);
+        }
 
         if (ImGui.beginCombo(label, optionsArray[selectedIndex.get()])) {
             for (int i = 0; i < optionsArray.length; i++) {
@@ -214,6 +563,7 @@ public class GuiBuilder {
         return this;
     }
     public GuiBuilder addSlider(String label, ImFloat value, float minValue, float maxValue, String format, float maxWidth) {
+        trackText(label);
         float screenWidth = ImGui.getIO().getDisplaySizeX();
         ImGui.setCursorPos((screenWidth - maxWidth) / 2, ImGui.getCursorPosY());
         ImGui.pushItemWidth(maxWidth); // Set max width for the slider
@@ -233,6 +583,7 @@ public class GuiBuilder {
      * @return The current instance of the GuiBuilder  
      */
     public GuiBuilder addFloatInput(String label, ImFloat value, float maxWidth) {
+        trackText(label);
         float screenWidth = ImGui.getIO().getDisplaySizeX();
         ImGui.setCursorPos((screenWidth - maxWidth) / 2, ImGui.getCursorPosY());
         ImGui.pushItemWidth(maxWidth); // Set max width for the input field
@@ -243,6 +594,92 @@ public class GuiBuilder {
         return this;
     }
 
+    /**
+     * Adds a single line text input, {@link ImGui#isItemEdited()} tells if the text changed this frame.
+     *
+     * @param label The label of the input.
+     * @param value The text, its buffer size limits how much can be typed unless it is resizable.
+     * @param hint Text shown while the input is empty, or null for none.
+     * @return The current instance of the GuiBuilder
+     */
+    public GuiBuilder addTextInput(String label, ImString value, String hint) {
+        return addTextInput(label, value, hint, 0);
+    }
+
+    /**
+     * Adds a single line text input that takes at most a number of characters, whatever their UTF-8 size.
+     * {@link ImGui#isItemEdited()} tells if the text changed this frame.
+     *
+     * @param label The label of the input.
+     * @param value The text, its buffer has to fit maxLength characters unless it is resizable.
+     * @param hint Text shown while the input is empty, or null for none.
+     * @param maxLength The most characters, or 0 for no limit but the buffer size.
+     * @return The current instance of the GuiBuilder
+     */
+    public GuiBuilder addTextInput(String label, ImString value, String hint, int maxLength) {
+        trackText(label);
+        characterLimit.maxLength = maxLength;
+        int flags = maxLength > 0 ? ImGuiInputTextFlags.CallbackEdit : ImGuiInputTextFlags.None;
+        if (hint != null && !hint.isEmpty()) {
+            trackText(hint);
+            ImGui.inputTextWithHint(label, hint, value, flags, characterLimit);
+        } else {
+            ImGui.inputText(label, value, flags, characterLimit);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a multi-line text input, {@link ImGui#isItemEdited()} tells if the text changed this frame.
+     *
+     * @param label The label of the input.
+     * @param value The text, its buffer size limits how much can be typed unless it is resizable.
+     * @param width The width of the input, or 0 for the default width.
+     * @param height The height of the input.
+     * @return The current instance of the GuiBuilder
+     */
+    public GuiBuilder addTextArea(String label, ImString value, float width, float height) {
+        return addTextArea(label, value, width, height, 0);
+    }
+
+    /**
+     * Adds a multi-line text input that takes at most a number of characters, whatever their UTF-8 size.
+     * {@link ImGui#isItemEdited()} tells if the text changed this frame.
+     *
+     * @param label The label of the input.
+     * @param value The text, its buffer has to fit maxLength characters unless it is resizable.
+     * @param width The width of the input, or 0 for the default width.
+     * @param height The height of the input.
+     * @param maxLength The most characters, or 0 for no limit but the buffer size.
+     * @return The current instance of the GuiBuilder
+     */
+    public GuiBuilder addTextArea(String label, ImString value, float width, float height, int maxLength) {
+        trackText(label);
+        characterLimit.maxLength = maxLength;
+        int flags = maxLength > 0 ? ImGuiInputTextFlags.CallbackEdit : ImGuiInputTextFlags.None;
+        ImGui.inputTextMultiline(label, value, width, height, flags, characterLimit);
+        return this;
+    }
+
+    /**
+     * Cuts the text of an input back to its character limit after each edit. ImGui only limits bytes, so a pasted
+     * or typed text that fits the buffer may still have too many characters.
+     */
+    private static final class CharacterLimit extends ImGuiInputTextCallback {
+        int maxLength;
+
+        @Override
+        public void accept(ImGuiInputTextCallbackData data) {
+            String text = data.getBuf();
+            if (text.codePointCount(0, text.length()) <= maxLength) {
+                return;
+            }
+            int keepBytes = text.substring(0, text.offsetByCodePoints(0, maxLength)).getBytes(StandardCharsets.UTF_8).length;
+            int totalBytes = text.getBytes(StandardCharsets.UTF_8).length;
+            data.deleteChars(keepBytes, totalBytes - keepBytes);
+        }
+    }
+
     /**
      * Adds text to the GUI, centered horizontally at the specified vertical offset.
      *
@@ -251,6 +688,7 @@ public class GuiBuilder {
      * @return The current instance of the GuiBuilder  
      */
     public GuiBuilder addTextCentered(String text, float yOffset) {
+        trackText(text);
         float screenWidth = ImGui.getIO().getDisplaySizeX();
         float textWidth = ImGui.calcTextSize(text).x;
         ImGui.setCursorPos((screenWidth - textWidth) / 2, yOffset);
@@ -271,6 +709,7 @@ public class GuiBuilder {
      * @return The current instance of the GuiBuilder  
      */
     public GuiBuilder addButtonCentered(String label, Runnable onClick, float yOffset, float paddingWidth, float paddingHeight) {
+        trackText(label);
         float screenWidth = ImGui.getIO().getDisplaySizeX();
         float textWidth = ImGui.calcTextSize(label).x;
         float buttonWidth = textWidth + paddingWidth; // Ensure padding allows for a nice button size
@@ -291,6 +730,7 @@ public class GuiBuilder {
      * @return The current instance of the GuiBuilder  
      */
     public GuiBuilder addTextAtPosition(String text, float x, float y) {
+        trackText(text);
         ImGui.setCursorPos(x, y);
         ImGui.text(text);
         return this;
@@ -300,6 +740,7 @@ public class GuiBuilder {
      * Renders the ImGui frame.
      */
     public void render() {
+        // Timed by ImguiHandler.render, which renders the frame that gets drawn
         ImGui.render();
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.github.strubium.windowmanager.imgui;
 
+import com.github.strubium.windowmanager.metrics.FlightEvents;
+import com.github.strubium.windowmanager.metrics.FrameMetric;
+import com.github.strubium.windowmanager.metrics.FrameMetrics;
+
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -58,10 +62,14 @@ public class GuiManager {
      * Renders all active GUIs
      */
     public void render() {
+        long start = FrameMetrics.start();
         for (String guiName : activeGUIs) {
             if (guiScreens.containsKey(guiName)) {
+                Object event = FlightEvents.beginScreenRender();
                 guiScreens.get(guiName).accept(null);
+                FlightEvents.endScreenRender(event, guiName);
             }
         }
+        FrameMetrics.stop(FrameMetric.GUI_RENDER, start);
     }
 }
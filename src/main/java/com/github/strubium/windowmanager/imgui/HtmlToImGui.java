@@ -1,9 +1,12 @@
 package com.github.strubium.windowmanager.imgui;
 
+import com.github.strubium.windowmanager.asset.TextureCache;
+import com.github.strubium.windowmanager.metrics.FlightEvents;
 import imgui.ImGui;
 import imgui.type.ImBoolean;
 import imgui.type.ImFloat;
 import imgui.type.ImInt;
+import imgui.type.ImString;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -17,17 +20,97 @@ public class HtmlToImGui {
     private static final Map<String, ImBoolean> checkboxStates = new HashMap<>();
     private static final Map<String, ImFloat> sliderStates = new HashMap<>();
     private static final Map<String, ImInt> comboBoxStates = new HashMap<>();
+    private static final Map<String, ImString> textStates = new HashMap<>();
+    private static final TextBufferPool textBuffers = new TextBufferPool();
+
+    // Models controls bind to with bind="name.field", and the resolved binding of each bound control
+    private static final Map<String, DataModel> models = new HashMap<>();
+    private static final Map<String, FieldBinding> bindings = new HashMap<>();
+    // The bind attribute of each control whose binding couldn't be resolved, so the error is only printed once
+    private static final Map<String, String> failedBindings = new HashMap<>();
 
     // Action handlers
     private static final Map<String, Runnable> buttonActions = new HashMap<>();
     private static final Map<String, Consumer<Boolean>> checkboxActions = new HashMap<>();
     private static final Map<String, Consumer<Float>> sliderActions = new HashMap<>();
     private static final Map<String, Consumer<Integer>> comboBoxActions = new HashMap<>();
+    private static final Map<String, Consumer<String>> textActions = new HashMap<>();
+
+    // Runs actions off the render thread when set, otherwise they run inline while rendering
+    private static volatile ActionDispatcher actionDispatcher;
+
+    // Texture cache used for <img> tags, none means images are shown as their alt text
+    private static TextureCache textureCache;
+
+    // Recently rendered HTML, so renderHtml doesn't parse the same markup every frame
+    private static final int COMPILED_CACHE_SIZE = 32;
+    private static final Map<String, CompiledHtml> compiledHtml = new LinkedHashMap<String, CompiledHtml>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledHtml> eldest) {
+            return size() > COMPILED_CACHE_SIZE;
+        }
+    };
 
     public static void renderHtml(GuiBuilder guiBuilder, String html) {
-        Document doc = Jsoup.parse(html);
-        Element body = doc.body();
-        parseElement(guiBuilder, body, "");
+        CompiledHtml compiled = compiledHtml.get(html);
+        if (compiled == null) {
+            compiled = compile(html);
+            compiledHtml.put(html, compiled);
+        }
+        renderHtml(guiBuilder, compiled);
+    }
+
+    /**
+     * Renders HTML that was compiled ahead of time, see {@link #compile(String)}.
+     *
+     * @param guiBuilder The builder to render with
+     * @param html The compiled HTML
+     */
+    public static void renderHtml(GuiBuilder guiBuilder, CompiledHtml html) {
+        ActionDispatcher dispatcher = actionDispatcher;
+        if (dispatcher != null) {
+            dispatcher.runRenderThreadTasks();
+        }
+        parseElement(guiBuilder, html, html.getBody());
+    }
+
+    /**
+     * Sets the texture cache used to load the images of {@code <img>} tags.
+     *
+     * @param cache The texture cache, or null to show images as their alt text
+     */
+    public static void setTextureCache(TextureCache cache) {
+        textureCache = cache;
+    }
+
+    /**
+     * Sets where registered actions run. With a dispatcher, control events are queued, coalesced per control and run
+     * on the dispatcher's executor, so slow actions don't hold up the frame.
+     *
+     * @param dispatcher The dispatcher, or null to run actions inline while rendering
+     */
+    public static void setActionDispatcher(ActionDispatcher dispatcher) {
+        actionDispatcher = dispatcher;
+    }
+
+    /**
+     * @return The dispatcher actions run on, or null if they run inline
+     */
+    public static ActionDispatcher getActionDispatcher() {
+        return actionDispatcher;
+    }
+
+    /**
+     * Parses HTML so it can be rendered every frame without parsing it again. Safe to call from any thread.
+     *
+     * @param html The HTML to compile
+     * @return The compiled HTML
+     */
+    public static CompiledHtml compile(String html) {
+        Object event = FlightEvents.beginHtmlCompile();
+        CompiledHtml compiled = new CompiledHtml(Jsoup.parse(html));
+        FlightEvents.endHtmlCompile(event, html.length(), compiled.getElementCount());
+        return compiled;
     }
 
     // Register actions for all control types:
@@ -47,6 +130,99 @@ public class HtmlToImGui {
         comboBoxActions.put(id, action);
     }
 
+    /**
+     * Registers the action of an {@code <input type="text">} or {@code <textarea>}, run with the new text each time it is edited
+     *
+     * @param id The id of the control
+     * @param action The action
+     */
+    public static void registerTextAction(String id, Consumer<String> action) {
+        textActions.put(id, action);
+    }
+
+    /**
+     * Gets the text of an {@code <input type="text">} or {@code <textarea>}
+     *
+     * @param id The id of the control
+     * @return The text, or null if the control hasn't been rendered yet
+     */
+    public static String getTextValue(String id) {
+        ImString buffer = textStates.get(id);
+        return buffer != null ? buffer.get() : null;
+    }
+
+    /**
+     * Forgets the text of every text input, e.g. when leaving a form. Their buffers are kept for the next inputs.
+     */
+    public static void clearTextInputs() {
+        for (ImString buffer : textStates.values()) {
+            textBuffers.release(buffer);
+        }
+        textStates.clear();
+    }
+
+    /**
+     * Registers a model that checkboxes, sliders, selects and text inputs can bind to with {@code bind="name.field"}.
+     * Bound controls show the field, write it back when edited and read it again whenever the model's version changes.
+     *
+     * @param name The name used in the bind attribute
+     * @param model The model
+     */
+    public static void registerModel(String name, DataModel model) {
+        models.put(name, model);
+        // Bindings hold on to the model they were resolved with, and a failed one may resolve now
+        bindings.clear();
+        failedBindings.clear();
+    }
+
+    // A binding that can't be resolved is reported once and the control is drawn unbound
+    private static FieldBinding getBinding(String id, Element element, Class<?> controlType) {
+        String bind = element.attr("bind");
+        if (bind.isEmpty()) {
+            return null;
+        }
+        FieldBinding binding = bindings.get(id);
+        if (binding == null || !binding.getBind().equals(bind)) {
+            if (bind.equals(failedBindings.get(id))) {
+                return null;
+            }
+            int dot = bind.indexOf('.');
+            DataModel model = dot > 0 ? models.get(bind.substring(0, dot)) : null;
+            if (model == null) {
+                System.err.println("No model registered for bind=\"" + bind + "\" on " + id);
+                failedBindings.put(id, bind);
+                return null;
+            }
+            try {
+                binding = FieldBinding.resolve(bind, model, controlType);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                failedBindings.put(id, bind);
+                return null;
+            }
+            bindings.put(id, binding);
+        }
+        return binding;
+    }
+
+    static void runButtonAction(String id, String text) {
+        Runnable r = buttonActions.get(id);
+        if (r != null) fireAction(id, Boolean.TRUE, clicked -> r.run());
+        else System.out.println("Button clicked (no action): " + text);
+    }
+
+    private static <T> void fireAction(String id, T value, Consumer<T> action) {
+        if (action == null) {
+            return;
+        }
+        ActionDispatcher dispatcher = actionDispatcher;
+        if (dispatcher != null) {
+            dispatcher.dispatch(id, value, action);
+        } else {
+            action.accept(value);
+        }
+    }
+
     // Print control IDs (unchanged)
     public static void printControlIds(String html) {
         Document doc = Jsoup.parse(html);
@@ -82,11 +258,9 @@ public class HtmlToImGui {
         }
     }
 
-    private static void parseElement(GuiBuilder guiBuilder, Element element, String path) {
-        int index = 0;
-        for (Element child : element.children()) {
-            String id = path + "/" + child.tagName() + "[" + index + "]";
-            index++;
+    private static void parseElement(GuiBuilder guiBuilder, CompiledHtml html, Element element) {
+        for (Element child : html.getChildren(element)) {
+            String id = html.getId(child);
 
             switch (child.tagName()) {
                 case "p":
@@ -103,11 +277,14 @@ public class HtmlToImGui {
 
                 case "button":
                     final String buttonId = id;
-                    guiBuilder.addButton(child.text(), () -> {
-                        Runnable r = buttonActions.get(buttonId);
-                        if (r != null) r.run();
-                        else System.out.println("Button clicked (no action): " + child.text());
-                    });
+                    guiBuilder.addButton(child.text(), () -> runButtonAction(buttonId, child.text()));
+                    break;
+
+                case "menu":
+                    // Every <menu> goes into one menu bar, drawn where the first one is
+                    if (html.isFirstMenu(child)) {
+                        guiBuilder.topToolbar(html.getMenuBar());
+                    }
                     break;
 
                 case "input":
@@ -116,12 +293,16 @@ public class HtmlToImGui {
                     switch (type) {
                         case "checkbox":
                             ImBoolean checkboxVal = checkboxStates.computeIfAbsent(id, k -> new ImBoolean(false));
+                            FieldBinding checkboxBinding = getBinding(id, child, boolean.class);
+                            if (checkboxBinding != null && checkboxBinding.isStale()) {
+                                checkboxVal.set(checkboxBinding.getBoolean());
+                            }
                             boolean oldCheckboxVal = checkboxVal.get();
                             guiBuilder.addCheckbox(label, checkboxVal);
                             // Trigger action if changed
                             if (checkboxVal.get() != oldCheckboxVal) {
-                                Consumer<Boolean> action = checkboxActions.get(id);
-                                if (action != null) action.accept(checkboxVal.get());
+                                if (checkboxBinding != null) checkboxBinding.setBoolean(checkboxVal.get());
+                                fireAction(id, checkboxVal.get(), checkboxActions.get(id));
                             }
                             break;
 
@@ -129,39 +310,81 @@ public class HtmlToImGui {
                             float min = parseFloatOrDefault(child.attr("min"), 0f);
                             float max = parseFloatOrDefault(child.attr("max"), 100f);
                             ImFloat sliderVal = sliderStates.computeIfAbsent(id, k -> new ImFloat(min));
+                            FieldBinding sliderBinding = getBinding(id, child, double.class);
+                            if (sliderBinding != null && sliderBinding.isStale()) {
+                                sliderVal.set((float) sliderBinding.getDouble());
+                            }
                             float oldSliderVal = sliderVal.get();
                             guiBuilder.addSlider(label, sliderVal, min, max, "%.1f", 200);
                             // Trigger action if changed
                             if (sliderVal.get() != oldSliderVal) {
-                                Consumer<Float> action = sliderActions.get(id);
-                                if (action != null) action.accept(sliderVal.get());
+                                if (sliderBinding != null) sliderBinding.setDouble(sliderVal.get());
+                                fireAction(id, sliderVal.get(), sliderActions.get(id));
                             }
                             break;
 
                         case "text":
-                            guiBuilder.addText("[Text input not implemented]");
+                            ImString textVal = getTextBuffer(id, child);
+                            FieldBinding textBinding = getBinding(id, child, String.class);
+                            if (textBinding != null && textBinding.isStale()) {
+                                textVal.set(textBinding.getString(), textVal.inputData.isResizable);
+                            }
+                            guiBuilder.addTextInput(label, textVal, child.attr("placeholder"),
+                                    TextBufferPool.getMaxLength(textVal));
+                            // Only an edit makes a new String
+                            if (ImGui.isItemEdited()) {
+                                if (textBinding != null) textBinding.setString(textVal.get());
+                                fireAction(id, textVal.get(), textActions.get(id));
+                            }
                             break;
                     }
                     break;
 
                 case "select":
                     ImInt selected = comboBoxStates.computeIfAbsent(id, k -> new ImInt(0));
-                    int oldSelected = selected.get();
-                    List<String> options = new ArrayList<>();
-                    for (Element option : child.select("option")) {
-                        options.add(option.text());
+                    List<String> options = html.getOptions(child);
+                    FieldBinding selectBinding = getBinding(id, child, double.class);
+                    if (selectBinding != null && selectBinding.isStale()) {
+                        // The model may hold any number, keep the index on an option
+                        selected.set(Math.max(0, Math.min(options.size() - 1, (int) selectBinding.getDouble())));
                     }
+                    int oldSelected = selected.get();
                     guiBuilder.addComboBox(child.hasAttr("label") ? child.attr("label") : id, selected, options);
                     // Trigger action if changed
                     if (selected.get() != oldSelected) {
-                        Consumer<Integer> action = comboBoxActions.get(id);
-                        if (action != null) action.accept(selected.get());
+                        if (selectBinding != null) selectBinding.setDouble(selected.get());
+                        fireAction(id, selected.get(), comboBoxActions.get(id));
+                    }
+                    break;
+
+                case "textarea":
+                    ImString areaVal = getTextBuffer(id, child);
+                    FieldBinding areaBinding = getBinding(id, child, String.class);
+                    if (areaBinding != null && areaBinding.isStale()) {
+                        areaVal.set(areaBinding.getString(), areaVal.inputData.isResizable);
+                    }
+                    float[] areaSize = html.getTextAreaSize(child);
+                    guiBuilder.addTextArea(child.hasAttr("label") ? child.attr("label") : id, areaVal,
+                            areaSize[1], areaSize[0] * ImGui.getTextLineHeight() + ImGui.getStyle().getFramePaddingY() * 2,
+                            TextBufferPool.getMaxLength(areaVal));
+                    if (ImGui.isItemEdited()) {
+                        if (areaBinding != null) areaBinding.setString(areaVal.get());
+                        fireAction(id, areaVal.get(), textActions.get(id));
+                    }
+                    break;
+
+                case "img":
+                    if (textureCache != null && child.hasAttr("src")) {
+                        guiBuilder.addImage(textureCache, child.attr("src"),
+                                parseFloatOrDefault(child.attr("width"), 0f), parseFloatOrDefault(child.attr("height"), 0f));
+                    } else {
+                        guiBuilder.addText(child.hasAttr("alt") ? child.attr("alt") : "[Image]");
                     }
                     break;
 
                 case "div":
                 case "span":
-                    parseElement(guiBuilder, child, id);
+                    parseElement(guiBuilder, html, child);
                     break;
 
                 default:
@@ -170,7 +393,23 @@ public class HtmlToImGui {
         }
     }
 
-    private static float parseFloatOrDefault(String value, float defaultValue) {
+    private static ImString getTextBuffer(String id, Element element) {
+        ImString buffer = textStates.get(id);
+        if (buffer == null) {
+            int maxLength = (int) parseFloatOrDefault(element.attr("maxlength"), 0f);
+            // Only read the starting text once, wholeText builds a new String each call
+            String initialText = "textarea".equals(element.tagName()) ? element.wholeText() : element.attr("value");
+            buffer = textBuffers.acquire(maxLength, initialText);
+            textStates.put(id, buffer);
+        }
+        return buffer;
+    }
+
+    static float parseFloatOrDefault(String value, float defaultValue) {
+        // Missing attributes are empty, don't throw for them every frame
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
         try {
             return Float.parseFloat(value);
         } catch (NumberFormatException e) {
@@ -1,12 +1,32 @@
 package com.github.strubium.windowmanager.imgui;
 
+import com.github.strubium.windowmanager.metrics.FlightEvents;
+import com.github.strubium.windowmanager.metrics.FrameMetric;
+import com.github.strubium.windowmanager.metrics.FrameMetrics;
+import com.github.strubium.windowmanager.window.InputListener;
+import com.github.strubium.windowmanager.window.InputQueue;
+import com.github.strubium.windowmanager.window.InputReplayer;
 import com.github.strubium.windowmanager.window.WindowManager;
+import imgui.ImDrawData;
+import imgui.ImFontAtlas;
 import imgui.ImGui;
+import imgui.ImGuiIO;
+import imgui.callback.ImStrConsumer;
+import imgui.callback.ImStrSupplier;
 import imgui.gl3.ImGuiImplGl3;
 import imgui.glfw.ImGuiImplGlfw;
+import imgui.internal.ImGuiContext;
 import org.lwjgl.glfw.GLFW;
+import org.lwjgl.glfw.GLFWCharCallback;
+import org.lwjgl.glfw.GLFWCursorEnterCallback;
+import org.lwjgl.glfw.GLFWCursorPosCallback;
+import org.lwjgl.glfw.GLFWKeyCallback;
+import org.lwjgl.glfw.GLFWMouseButtonCallback;
+import org.lwjgl.glfw.GLFWScrollCallback;
+import org.lwjgl.glfw.GLFWWindowFocusCallback;
+import org.lwjgl.system.Callback;
 
-import static org.lwjgl.glfw.GLFW.glfwGetWindowSize;
+import static org.lwjgl.glfw.GLFW.*;
 
 /**
  * Handler class for integrating ImGui with GLFW and OpenGL.
@@ -18,6 +38,105 @@ public class ImguiHandler {
     private ImGuiImplGl3 imguiGl3;
     private ImGuiImplGlfw imguiGlfw;
     private final WindowManager windowManager;
+    private ImGuiContext context;
+    // False when the renderer and font atlas belong to the handler this one shares with
+    private boolean ownsRenderer;
+    // The callbacks that were on the window before ours, called before ImGui sees the event
+    private GLFWKeyCallback previousKey;
+    private GLFWCharCallback previousChar;
+    private GLFWMouseButtonCallback previousMouseButton;
+    private GLFWScrollCallback previousScroll;
+    private GLFWWindowFocusCallback previousFocus;
+    private GLFWCursorEnterCallback previousCursorEnter;
+    private GLFWCursorPosCallback previousCursorPos;
+    private InputReplayer replayer;
+    // The menu bar drawn in the last frame, its shortcuts work without being set on the window
+    private MenuBar menuBar;
+    // The live callbacks, detached from the window while a recording plays and fed the recorded events instead
+    private GLFWKeyCallback liveKey;
+    private GLFWCharCallback liveChar;
+    private GLFWMouseButtonCallback liveMouseButton;
+    private GLFWCursorPosCallback liveCursorPos;
+    private GLFWScrollCallback liveScroll;
+    private final InputListener replayTarget = new InputListener() {
+        @Override
+        public void onKey(int key, int scancode, int action, int mods) {
+            if (liveKey != null) {
+                liveKey.invoke(windowManager.window, key, scancode, action, mods);
+            }
+        }
+
+        @Override
+        public void onChar(int codepoint) {
+            if (liveChar != null) {
+                liveChar.invoke(windowManager.window, codepoint);
+            }
+        }
+
+        @Override
+        public void onMouseButton(int button, int action, int mods) {
+            if (liveMouseButton != null) {
+                liveMouseButton.invoke(windowManager.window, button, action, mods);
+            }
+        }
+
+        @Override
+        public void onCursorPos(double x, double y) {
+            if (liveCursorPos != null) {
+                liveCursorPos.invoke(windowManager.window, x, y);
+            }
+        }
+
+        @Override
+        public void onScroll(double xOffset, double yOffset) {
+            if (liveScroll != null) {
+                liveScroll.invoke(windowManager.window, xOffset, yOffset);
+            }
+        }
+    };
+    // Set when the window renders on its own thread, the callbacks queue events for newFrame to drain there
+    private InputQueue inputQueue;
+    // Whether ImGui's clipboard goes through the InputQueue's copy instead of GLFW
+    private boolean queueClipboard;
+    private final boolean[] mouseDown = new boolean[5];
+    private final boolean[] mouseJustPressed = new boolean[5];
+    private float mouseX = -Float.MAX_VALUE;
+    private float mouseY = -Float.MAX_VALUE;
+    private boolean queuedFocus;
+    private long lastFrameTime;
+    private final InputListener queueTarget = new InputListener() {
+        @Override
+        public void onKey(int key, int scancode, int action, int mods) {
+            imguiGlfw.keyCallback(windowManager.window, key, scancode, action, mods);
+            dispatchAccelerator(key, action, mods);
+        }
+
+        @Override
+        public void onChar(int codepoint) {
+            imguiGlfw.charCallback(windowManager.window, codepoint);
+        }
+
+        @Override
+        public void onMouseButton(int button, int action, int mods) {
+            if (button >= 0 && button < mouseDown.length) {
+                mouseDown[button] = action != GLFW_RELEASE;
+                if (action == GLFW_PRESS) {
+                    mouseJustPressed[button] = true;
+                }
+            }
+        }
+
+        @Override
+        public void onCursorPos(double x, double y) {
+            mouseX = (float) x;
+            mouseY = (float) y;
+        }
+
+        @Override
+        public void onScroll(double xOffset, double yOffset) {
+            imguiGlfw.scrollCallback(windowManager.window, xOffset, yOffset);
+        }
+    };
 
 
     /**
@@ -35,19 +154,289 @@ public class ImguiHandler {
      * @param glslVersion the version of OpenGL to use (Ex: #version 130)
      */
     public void initialize(String glslVersion) {
-        ImGui.createContext();
+        initialize(glslVersion, null);
+    }
+
+    /**
+     * Initializes ImGui with its own context for this window, sharing the font atlas and renderer of another handler.
+     * The windows must share OpenGL objects (see {@link WindowManager#createWindow(String, boolean, WindowManager)}),
+     * and this handler must be cleaned up before the one it shares with.
+     *
+     * @param glslVersion the version of OpenGL to use (Ex: #version 130)
+     * @param shareWith The handler to share fonts and the renderer with, or null to create them
+     */
+    public void initialize(String glslVersion, ImguiHandler shareWith) {
+        // createContext hands back the same wrapper every time, keep a copy of the pointer
+        if (shareWith == null) {
+            context = new ImGuiContext(ImGui.createContext().ptr);
+        } else {
+            ImGui.setCurrentContext(shareWith.context);
+            context = new ImGuiContext(ImGui.createContext(ImGui.getIO().getFonts()).ptr);
+            ImGui.setCurrentContext(context);
+            // Only one context gets to save window positions to imgui.ini
+            ImGui.getIO().setIniFilename(null);
+        }
+        ImGui.setCurrentContext(context);
+
         imguiGlfw = new ImGuiImplGlfw();
-        imguiGlfw.init(windowManager.window, true);
-        imguiGl3 = new ImGuiImplGl3();
-        imguiGl3.init(glslVersion); // OpenGL version
+        imguiGlfw.init(windowManager.window, false);
+        installCallbacks();
+        windowManager.setAcceleratorsDeferred(true);
+
+        if (shareWith == null) {
+            imguiGl3 = new ImGuiImplGl3();
+            imguiGl3.init(glslVersion); // OpenGL version
+            ownsRenderer = true;
+        } else {
+            imguiGl3 = shareWith.imguiGl3;
+            ownsRenderer = false;
+        }
+    }
+
+    /**
+     * Makes this handler's ImGui context current, every method of the handler does so before touching ImGui
+     */
+    public void makeCurrent() {
+        ImGui.setCurrentContext(context);
+    }
+
+    /**
+     * Routes the window's events to this handler's context. GLFW calls these during glfwPollEvents for every window,
+     * so each callback switches to its own context before ImGui sees the event.
+     */
+    private void installCallbacks() {
+        long window = windowManager.window;
+        previousKey = glfwSetKeyCallback(window, (w, key, scancode, action, mods) -> {
+            if (previousKey != null) {
+                previousKey.invoke(w, key, scancode, action, mods);
+            }
+            if (inputQueue != null) {
+                inputQueue.onKey(key, scancode, action, mods);
+                return;
+            }
+            makeCurrent();
+            imguiGlfw.keyCallback(w, key, scancode, action, mods);
+            dispatchAccelerator(key, action, mods);
+        });
+        previousChar = glfwSetCharCallback(window, (w, codepoint) -> {
+            if (previousChar != null) {
+                previousChar.invoke(w, codepoint);
+            }
+            if (inputQueue != null) {
+                inputQueue.onChar(codepoint);
+                return;
+            }
+            makeCurrent();
+            imguiGlfw.charCallback(w, codepoint);
+        });
+        previousMouseButton = glfwSetMouseButtonCallback(window, (w, button, action, mods) -> {
+            if (previousMouseButton != null) {
+                previousMouseButton.invoke(w, button, action, mods);
+            }
+            if (inputQueue != null) {
+                inputQueue.onMouseButton(button, action, mods);
+                return;
+            }
+            makeCurrent();
+            imguiGlfw.mouseButtonCallback(w, button, action, mods);
+        });
+        previousScroll = glfwSetScrollCallback(window, (w, xOffset, yOffset) -> {
+            if (previousScroll != null) {
+                previousScroll.invoke(w, xOffset, yOffset);
+            }
+            if (inputQueue != null) {
+                inputQueue.onScroll(xOffset, yOffset);
+                return;
+            }
+            makeCurrent();
+            imguiGlfw.scrollCallback(w, xOffset, yOffset);
+        });
+        previousFocus = glfwSetWindowFocusCallback(window, (w, focused) -> {
+            if (previousFocus != null) {
+                previousFocus.invoke(w, focused);
+            }
+            if (inputQueue != null) {
+                return;
+            }
+            makeCurrent();
+            imguiGlfw.windowFocusCallback(w, focused);
+        });
+        previousCursorEnter = glfwSetCursorEnterCallback(window, (w, entered) -> {
+            if (previousCursorEnter != null) {
+                previousCursorEnter.invoke(w, entered);
+            }
+            if (inputQueue != null) {
+                return;
+            }
+            makeCurrent();
+            imguiGlfw.cursorEnterCallback(w, entered);
+        });
+        // The GLFW backend reads the cursor itself each frame, only a queue needs the events
+        previousCursorPos = glfwSetCursorPosCallback(window, (w, x, y) -> {
+            if (previousCursorPos != null) {
+                previousCursorPos.invoke(w, x, y);
+            }
+            if (inputQueue != null) {
+                inputQueue.onCursorPos(x, y);
+            }
+        });
+    }
+
+    /**
+     * Runs the window's shortcut for a key press on the thread that renders it, unless ImGui is taking text input so
+     * typing into a field doesn't trigger menu items. Shortcuts of the menu bar drawn last frame work too.
+     */
+    private void dispatchAccelerator(int key, int action, int mods) {
+        if (action == GLFW_PRESS && !ImGui.getIO().getWantTextInput() && !windowManager.dispatchAccelerator(key, mods)
+                && menuBar != null) {
+            menuBar.getAccelerators().dispatch(key, mods);
+        }
+    }
+
+    private void removeCallbacks() {
+        long window = windowManager.window;
+        freeCallback(glfwSetKeyCallback(window, previousKey));
+        freeCallback(glfwSetCharCallback(window, previousChar));
+        freeCallback(glfwSetMouseButtonCallback(window, previousMouseButton));
+        freeCallback(glfwSetScrollCallback(window, previousScroll));
+        freeCallback(glfwSetWindowFocusCallback(window, previousFocus));
+        freeCallback(glfwSetCursorEnterCallback(window, previousCursorEnter));
+        freeCallback(glfwSetCursorPosCallback(window, previousCursorPos));
+    }
+
+    private static void freeCallback(Callback callback) {
+        if (callback != null) {
+            callback.free();
+        }
+    }
+
+    /**
+     * Rebuilds the font atlas and uploads it, call this after setting fonts through {@link GuiBuilder#setFont}.
+     */
+    public void updateFonts() {
+        makeCurrent();
+        long start = System.nanoTime();
+        Object event = FlightEvents.beginFontAtlasBuild();
+        ImFontAtlas fontAtlas = ImGui.getIO().getFonts();
+        DynamicFontAtlas dynamicFonts = GuiBuilder.getDynamicFonts();
+        if (dynamicFonts != null) {
+            dynamicFonts.update(fontAtlas);
+        }
+        imguiGl3.updateFontsTexture();
+
+        FontAtlasCache cache = GuiBuilder.getFontCache();
+        if (dynamicFonts != null) {
+            dynamicFonts.onAtlasBuilt(fontAtlas);
+            FlightEvents.endFontAtlasBuild(event, "dynamic", dynamicFonts.getGlyphCount());
+        } else if (cache != null) {
+            cache.onAtlasBuilt(fontAtlas);
+            cache.recordBuildTime(System.nanoTime() - start);
+            FlightEvents.endFontAtlasBuild(event, "cached", 0);
+        } else {
+            FlightEvents.endFontAtlasBuild(event, "plain", 0);
+        }
+    }
+
+    /**
+     * Plays back recorded input instead of the live GLFW input. Each {@link #newFrame()} advances the recording by
+     * one timestep and uses it as ImGui's delta time, so replays are the same on every run.
+     * Call this after {@link #initialize}, on the main thread. Replays can't be combined with an {@link InputQueue},
+     * render the window on the main thread while replaying.
+     *
+     * @param replayer The recording to play back, or null to use live input again
+     * @throws IllegalStateException if an input queue is set
+     */
+    public void setInputReplayer(InputReplayer replayer) {
+        if (replayer != null && inputQueue != null) {
+            throw new IllegalStateException("Can't replay input while the window renders from an input queue");
+        }
+        long window = windowManager.window;
+        if (replayer != null && this.replayer == null) {
+            liveKey = glfwSetKeyCallback(window, null);
+            liveChar = glfwSetCharCallback(window, null);
+            liveMouseButton = glfwSetMouseButtonCallback(window, null);
+            liveCursorPos = glfwSetCursorPosCallback(window, null);
+            liveScroll = glfwSetScrollCallback(window, null);
+        } else if (replayer == null && this.replayer != null) {
+            glfwSetKeyCallback(window, liveKey);
+            glfwSetCharCallback(window, liveChar);
+            glfwSetMouseButtonCallback(window, liveMouseButton);
+            glfwSetCursorPosCallback(window, liveCursorPos);
+            glfwSetScrollCallback(window, liveScroll);
+        }
+        this.replayer = replayer;
+    }
+
+    /**
+     * Lets another thread render the window. GLFW only allows polling and reading the window on the main thread, so
+     * while a queue is set the window's events go into it, and {@link #newFrame()} takes them and the window size
+     * from the queue instead of asking GLFW. Call this on the main thread, the main thread then has to call
+     * {@link InputQueue#updateWindowState()} after every poll.
+     *
+     * @param inputQueue The queue of this window, or null to read input on the calling thread again
+     * @throws IllegalStateException if an input replayer is set
+     */
+    public void setInputQueue(InputQueue inputQueue) {
+        if (inputQueue != null && replayer != null) {
+            throw new IllegalStateException("Can't render from an input queue while replaying input");
+        }
+        this.inputQueue = inputQueue;
+        lastFrameTime = 0;
     }
 
     /**
      * Starts a new ImGui frame.
      */
     public void newFrame() {
+        long start = FrameMetrics.start();
+        makeCurrent();
+
+        // Grow the dynamic font atlas between frames, while ImGui isn't using it
+        DynamicFontAtlas dynamicFonts = GuiBuilder.getDynamicFonts();
+        if (dynamicFonts != null) {
+            // Most frames have nothing to add, only those that do get an event
+            Object event = dynamicFonts.hasPendingBuild() ? FlightEvents.beginFontAtlasBuild() : null;
+            if (dynamicFonts.update(ImGui.getIO().getFonts())) {
+                imguiGl3.updateFontsTexture();
+                dynamicFonts.onAtlasBuilt(ImGui.getIO().getFonts());
+                FlightEvents.endFontAtlasBuild(event, "dynamic", dynamicFonts.getGlyphCount());
+            } else {
+                // The new glyphs went into the existing texture
+                FlightEvents.endFontAtlasBuild(event, "dynamic-incremental", dynamicFonts.getGlyphCount());
+            }
+        }
+
+        if ((inputQueue != null) != queueClipboard) {
+            setQueueClipboard(inputQueue != null);
+        }
+        if (inputQueue != null) {
+            FrameMetrics.stop(FrameMetric.NEW_FRAME, start);
+            // The main thread's wait for events isn't part of any frame, draining the queue is this thread's input work
+            start = FrameMetrics.start();
+            Object inputEvent = FlightEvents.beginInputDrain();
+            applyQueuedInput();
+            FlightEvents.endInputDrain(inputEvent, "queue");
+            FrameMetrics.stop(FrameMetric.POLL_INPUT, start);
+
+            start = FrameMetrics.start();
+            ImGui.newFrame();
+            FrameMetrics.stop(FrameMetric.NEW_FRAME, start);
+            return;
+        }
+
         imguiGlfw.newFrame();
 
+        if (replayer != null) {
+            // The GLFW backend just read the live mouse, replace it with the recording
+            replayer.advance(replayTarget);
+            ImGuiIO io = ImGui.getIO();
+            io.setDeltaTime(replayer.getTimestep());
+            io.setMousePos(replayer.getMouseX(), replayer.getMouseY());
+            for (int button = 0; button < 5; button++) {
+                io.setMouseDown(button, replayer.isMouseButtonDown(button));
+            }
+        }
+
         // Get the current window size dynamically
         int[] width = new int[1];
         int[] height = new int[1];
@@ -58,8 +447,74 @@ public class ImguiHandler {
 
         // Start a new ImGui frame
         ImGui.newFrame();
+        FrameMetrics.stop(FrameMetric.NEW_FRAME, start);
     }
 
+    /**
+     * The GLFW backend's clipboard functions may only run on the main thread, swap them for ones that use the copy
+     * the main thread keeps while another thread renders, and back again
+     */
+    private void setQueueClipboard(boolean queued) {
+        queueClipboard = queued;
+        ImGuiIO io = ImGui.getIO();
+        long window = windowManager.window;
+        io.setGetClipboardTextFn(new ImStrSupplier() {
+            @Override
+            public String get() {
+                if (queued) {
+                    return InputQueue.getClipboard();
+                }
+                String text = glfwGetClipboardString(window);
+                return text != null ? text : "";
+            }
+        });
+        io.setSetClipboardTextFn(new ImStrConsumer() {
+            @Override
+            public void accept(String text) {
+                if (queued) {
+                    InputQueue.setClipboard(text);
+                } else {
+                    glfwSetClipboardString(window, text);
+                }
+            }
+        });
+    }
+
+    /**
+     * Does what the GLFW backend's newFrame does, from the queue and the window state the main thread saw last
+     */
+    private void applyQueuedInput() {
+        ImGuiIO io = ImGui.getIO();
+        int width = inputQueue.getWidth();
+        int height = inputQueue.getHeight();
+        io.setDisplaySize(width, height);
+        if (width > 0 && height > 0) {
+            io.setDisplayFramebufferScale((float) inputQueue.getFramebufferWidth() / width,
+                    (float) inputQueue.getFramebufferHeight() / height);
+        }
+
+        long now = System.nanoTime();
+        io.setDeltaTime(lastFrameTime > 0 && now > lastFrameTime ? (now - lastFrameTime) / 1e9f : 1f / 60f);
+        lastFrameTime = now;
+
+        boolean focused = inputQueue.isFocused();
+        if (focused != queuedFocus) {
+            queuedFocus = focused;
+            imguiGlfw.windowFocusCallback(windowManager.window, focused);
+        }
+
+        inputQueue.drain(queueTarget);
+        for (int button = 0; button < mouseDown.length; button++) {
+            // A click that starts and ends between two frames still counts as down for one frame
+            io.setMouseDown(button, mouseJustPressed[button] || mouseDown[button]);
+            mouseJustPressed[button] = false;
+        }
+        if (focused) {
+            io.setMousePos(mouseX, mouseY);
+        } else {
+            io.setMousePos(-Float.MAX_VALUE, -Float.MAX_VALUE);
+        }
+    }
 
     /**
      * Handles the keyboard and mouse input for IMGUI
@@ -67,6 +522,28 @@ public class ImguiHandler {
      * @param window the GLFW window handle.
      */
     public void handleInput(long window) {
+        long start = FrameMetrics.start();
+        makeCurrent();
+        Object event = FlightEvents.beginInputDrain();
+        if (replayer != null) {
+            for (int key = GLFW.GLFW_KEY_SPACE; key <= GLFW.GLFW_KEY_LAST; key++) {
+                ImGui.getIO().setKeysDown(key, replayer.isKeyDown(key));
+            }
+            for (int button = 0; button < 3; button++) {
+                ImGui.getIO().setMouseDown(button, replayer.isMouseButtonDown(button));
+            }
+            ImGui.getIO().setMousePos(replayer.getMouseX(), replayer.getMouseY());
+            FlightEvents.endInputDrain(event, "replay");
+            FrameMetrics.stop(FrameMetric.POLL_INPUT, start);
+            return;
+        }
+        if (inputQueue != null) {
+            // newFrame already drained the queue, GLFW can't be asked from this thread
+            FlightEvents.endInputDrain(event, "queue");
+            FrameMetrics.stop(FrameMetric.POLL_INPUT, start);
+            return;
+        }
+
         // Handle keyboard input
         for (int key = GLFW.GLFW_KEY_SPACE; key <= GLFW.GLFW_KEY_LAST; key++) {
             int state = GLFW.glfwGetKey(window, key);
@@ -85,22 +562,39 @@ public class ImguiHandler {
 
         // Handle scroll input
         // ImGui.getIO().setMouseWheel((float) GLFW.glfwGetScrollY(window));
+        FlightEvents.endInputDrain(event, "handleInput");
+        FrameMetrics.stop(FrameMetric.POLL_INPUT, start);
     }
 
     /**
      * Renders the ImGui frame.
      */
     public void render() {
+        long start = FrameMetrics.start();
+        makeCurrent();
         ImGui.render();
-        imguiGl3.renderDrawData(ImGui.getDrawData());
+        FrameMetrics.stop(FrameMetric.IMGUI_RENDER, start);
+        menuBar = MenuBar.takeRendered();
+
+        ImDrawData drawData = ImGui.getDrawData();
+        FrameMetrics.countDrawData(drawData);
+        start = FrameMetrics.start();
+        imguiGl3.renderDrawData(drawData);
+        FrameMetrics.stop(FrameMetric.RENDER_DRAW_DATA, start);
     }
 
     /**
      * Cleans up ImGui resources.
      */
     public void cleanup() {
+        setInputReplayer(null);
+        makeCurrent();
+        removeCallbacks();
+        windowManager.setAcceleratorsDeferred(false);
         imguiGlfw.dispose();
-        imguiGl3.dispose();
-        ImGui.destroyContext();
+        if (ownsRenderer) {
+            imguiGl3.dispose();
+        }
+        ImGui.destroyContext(context);
     }
 }
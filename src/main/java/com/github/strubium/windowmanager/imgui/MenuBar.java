@@ -0,0 +1,131 @@
+package com.github.strubium.windowmanager.imgui;
+
+import com.github.strubium.windowmanager.window.AcceleratorTable;
+import imgui.ImGui;
+
+import java.util.List;
+
+/**
+ * A main menu bar checked and flattened once, drawn with {@link GuiBuilder#topToolbar(MenuBar)}.
+ * <p>
+ * Items can have keyboard shortcuts such as {@code Ctrl+S}. They are shown next to the item and collected into an
+ * {@link AcceleratorTable}, which works with the menu closed once it is set on the window with
+ * {@link com.github.strubium.windowmanager.window.WindowManager#setAccelerators(AcceleratorTable)}. In a window
+ * with an {@link ImguiHandler} the shortcuts of the menu bar drawn last frame also work without that, which covers
+ * menus drawn by {@link HtmlToImGui#renderHtml(GuiBuilder, String)}.
+ *
+ * @author strubium
+ */
+public final class MenuBar {
+    private final String[] menuLabels;
+    // Items of menu i are firstItem[i] until firstItem[i + 1]
+    private final int[] firstItem;
+    private final String[] itemLabels;
+    private final String[] itemShortcuts;
+    private final Runnable[] itemActions;
+    private final AcceleratorTable accelerators = new AcceleratorTable();
+    // The ImGui context is used by one thread at a time, so is this
+    private static MenuBar rendered;
+
+    private MenuBar(List<String> menuLabels, List<List<String>> subMenuLabels, List<List<String>> subMenuShortcuts,
+                    List<List<Runnable>> subMenuActions) {
+        if (menuLabels.size() != subMenuLabels.size() || menuLabels.size() != subMenuActions.size()
+                || (subMenuShortcuts != null && menuLabels.size() != subMenuShortcuts.size())) {
+            throw new IllegalArgumentException("Menu labels, sub-menu labels, shortcuts and sub-menu actions must have the same size.");
+        }
+        int items = 0;
+        for (int i = 0; i < menuLabels.size(); i++) {
+            int count = subMenuLabels.get(i).size();
+            if (count != subMenuActions.get(i).size() || (subMenuShortcuts != null && count != subMenuShortcuts.get(i).size())) {
+                throw new IllegalArgumentException("Menu '" + menuLabels.get(i) + "' needs a label, shortcut and action for every item.");
+            }
+            items += count;
+        }
+
+        this.menuLabels = menuLabels.toArray(new String[0]);
+        this.firstItem = new int[menuLabels.size() + 1];
+        this.itemLabels = new String[items];
+        this.itemShortcuts = new String[items];
+        this.itemActions = new Runnable[items];
+
+        int item = 0;
+        for (int i = 0; i < menuLabels.size(); i++) {
+            firstItem[i] = item;
+            for (int j = 0; j < subMenuLabels.get(i).size(); j++, item++) {
+                itemLabels[item] = subMenuLabels.get(i).get(j);
+                itemActions[item] = subMenuActions.get(i).get(j);
+                String shortcut = subMenuShortcuts != null ? subMenuShortcuts.get(i).get(j) : null;
+                if (shortcut != null && !shortcut.isEmpty()) {
+                    accelerators.put(shortcut, itemActions[item]);
+                    itemShortcuts[item] = shortcut;
+                }
+            }
+        }
+        firstItem[menuLabels.size()] = item;
+    }
+
+    /**
+     * Builds a menu bar without shortcuts
+     *
+     * @param menuLabels    List of main menu labels.
+     * @param subMenuLabels List of lists containing sub-menu labels.
+     * @param subMenuActions List of lists containing actions for each submenu item.
+     * @return The menu bar
+     */
+    public static MenuBar compile(List<String> menuLabels, List<List<String>> subMenuLabels, List<List<Runnable>> subMenuActions) {
+        return new MenuBar(menuLabels, subMenuLabels, null, subMenuActions);
+    }
+
+    /**
+     * Builds a menu bar with shortcuts
+     *
+     * @param menuLabels    List of main menu labels.
+     * @param subMenuLabels List of lists containing sub-menu labels.
+     * @param subMenuShortcuts List of lists containing the shortcut of each submenu item (Ex: Ctrl+S), null or empty for none.
+     * @param subMenuActions List of lists containing actions for each submenu item.
+     * @return The menu bar
+     * @throws IllegalArgumentException if the lists don't line up or a shortcut can't be read
+     */
+    public static MenuBar compile(List<String> menuLabels, List<List<String>> subMenuLabels, List<List<String>> subMenuShortcuts,
+                                  List<List<Runnable>> subMenuActions) {
+        return new MenuBar(menuLabels, subMenuLabels, subMenuShortcuts, subMenuActions);
+    }
+
+    /**
+     * @return The shortcuts of every item, to set on the window
+     */
+    public AcceleratorTable getAccelerators() {
+        return accelerators;
+    }
+
+    /**
+     * @return The menu bar drawn since the last call, or null if none was drawn
+     */
+    static MenuBar takeRendered() {
+        MenuBar menuBar = rendered;
+        rendered = null;
+        return menuBar;
+    }
+
+    void render() {
+        rendered = this;
+        if (!ImGui.beginMainMenuBar()) {
+            return;
+        }
+        for (int i = 0; i < menuLabels.length; i++) {
+            GuiBuilder.trackText(menuLabels[i]);
+            if (ImGui.beginMenu(menuLabels[i])) {
+                for (int item = firstItem[i]; item < firstItem[i + 1]; item++) {
+                    GuiBuilder.trackText(itemLabels[item]);
+                    boolean clicked = itemShortcuts[item] != null
+                            ? ImGui.menuItem(itemLabels[item], itemShortcuts[item]) : ImGui.menuItem(itemLabels[item]);
+                    if (clicked) {
+                        itemActions[item].run();
+                    }
+                }
+                ImGui.endMenu();
+            }
+        }
+        ImGui.endMainMenuBar();
+    }
+}
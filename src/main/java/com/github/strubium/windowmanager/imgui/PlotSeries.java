@@ -0,0 +1,266 @@
+package com.github.strubium.windowmanager.imgui;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * A series of samples to draw with {@link GuiBuilder#addPlot}, with a min/max pyramid over it.
+ * <p>
+ * Level 1 of the pyramid holds the min and max of every 16 samples and each level above covers 4 buckets of the
+ * one below, so the min and max of any range can be found by visiting a handful of buckets instead of every sample.
+ * Streaming series grow with {@link #append(float)}, which may be called from another thread than the one drawing.
+ * Every method synchronizes on the series, hold its monitor across several calls to see one consistent snapshot.
+ *
+ * @author strubium
+ */
+public class PlotSeries {
+    private static final int BASE_BUCKET = 16;
+    private static final int BRANCH = 4;
+
+    private float[] floats;
+    private double[] doubles;
+    private FloatBuffer floatBuffer;
+    private DoubleBuffer doubleBuffer;
+    private final boolean streaming;
+    private int count;
+
+    // mins[level - 1] and maxs[level - 1] hold the buckets of that level
+    private float[][] mins = new float[0][];
+    private float[][] maxs = new float[0][];
+
+    private PlotSeries(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Creates a series over an array, the array must not change afterwards
+     *
+     * @param samples The samples
+     * @return The series
+     */
+    public static PlotSeries of(float[] samples) {
+        PlotSeries series = new PlotSeries(false);
+        series.floats = samples;
+        series.count = samples.length;
+        series.buildPyramid();
+        return series;
+    }
+
+    /**
+     * Creates a series over an array, the array must not change afterwards
+     *
+     * @param samples The samples
+     * @return The series
+     */
+    public static PlotSeries of(double[] samples) {
+        PlotSeries series = new PlotSeries(false);
+        series.doubles = samples;
+        series.count = samples.length;
+        series.buildPyramid();
+        return series;
+    }
+
+    /**
+     * Creates a series over the remaining samples of a buffer, which may be off-heap. The buffer must not change afterwards
+     *
+     * @param samples The samples
+     * @return The series
+     */
+    public static PlotSeries of(FloatBuffer samples) {
+        PlotSeries series = new PlotSeries(false);
+        series.floatBuffer = samples.slice();
+        series.count = samples.remaining();
+        series.buildPyramid();
+        return series;
+    }
+
+    /**
+     * Creates a series over the remaining samples of a buffer, which may be off-heap. The buffer must not change afterwards
+     *
+     * @param samples The samples
+     * @return The series
+     */
+    public static PlotSeries of(DoubleBuffer samples) {
+        PlotSeries series = new PlotSeries(false);
+        series.doubleBuffer = samples.slice();
+        series.count = samples.remaining();
+        series.buildPyramid();
+        return series;
+    }
+
+    /**
+     * Creates an empty series that grows with {@link #append(float)}
+     *
+     * @param initialCapacity The number of samples to allocate room for up front
+     * @return The series
+     */
+    public static PlotSeries streaming(int initialCapacity) {
+        PlotSeries series = new PlotSeries(true);
+        series.floats = new float[Math.max(initialCapacity, BASE_BUCKET)];
+        return series;
+    }
+
+    /**
+     * Appends a sample to a streaming series
+     *
+     * @param value The sample
+     */
+    public synchronized void append(float value) {
+        if (!streaming) {
+            throw new IllegalStateException("Only streaming series can be appended to");
+        }
+        if (count == floats.length) {
+            floats = Arrays.copyOf(floats, floats.length * 2);
+        }
+        floats[count] = value;
+        count++;
+
+        int bucketSize = BASE_BUCKET;
+        for (int level = 1; ; level++) {
+            int bucket = (count - 1) / bucketSize;
+            if (level > mins.length) {
+                if (count <= bucketSize) {
+                    break;
+                }
+                addLevel(level, bucketSize);
+            } else {
+                ensureBucket(level, bucket);
+                if ((count - 1) % bucketSize == 0) {
+                    mins[level - 1][bucket] = value;
+                    maxs[level - 1][bucket] = value;
+                } else {
+                    mins[level - 1][bucket] = Math.min(mins[level - 1][bucket], value);
+                    maxs[level - 1][bucket] = Math.max(maxs[level - 1][bucket], value);
+                }
+            }
+            bucketSize *= BRANCH;
+        }
+    }
+
+    /**
+     * Appends samples to a streaming series
+     *
+     * @param values The samples
+     * @param offset The index of the first sample to append
+     * @param length The number of samples to append
+     */
+    public synchronized void append(float[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            append(values[i]);
+        }
+    }
+
+    /**
+     * @return The number of samples
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Gets a single sample
+     *
+     * @param index The index of the sample
+     * @return The sample
+     */
+    public synchronized float get(int index) {
+        if (floats != null) {
+            return floats[index];
+        } else if (doubles != null) {
+            return (float) doubles[index];
+        } else if (floatBuffer != null) {
+            return floatBuffer.get(index);
+        }
+        return (float) doubleBuffer.get(index);
+    }
+
+    /**
+     * Finds the min and max of a range of samples
+     *
+     * @param from The first sample, inclusive
+     * @param to The last sample, exclusive
+     * @param out Receives the min at index 0 and the max at index 1
+     */
+    public synchronized void minMax(int from, int to, float[] out) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+
+        int i = from;
+        while (i < to) {
+            // Take the biggest bucket that starts at i and fits in the range
+            int level = 0;
+            int bucketSize = 1;
+            int nextSize = BASE_BUCKET;
+            while (level < mins.length && i % nextSize == 0 && i + nextSize <= to) {
+                level++;
+                bucketSize = nextSize;
+                nextSize *= BRANCH;
+            }
+
+            if (level == 0) {
+                float value = get(i);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            } else {
+                int bucket = i / bucketSize;
+                min = Math.min(min, mins[level - 1][bucket]);
+                max = Math.max(max, maxs[level - 1][bucket]);
+            }
+            i += bucketSize;
+        }
+
+        out[0] = min;
+        out[1] = max;
+    }
+
+    private void buildPyramid() {
+        int bucketSize = BASE_BUCKET;
+        for (int level = 1; count > bucketSize; level++) {
+            addLevel(level, bucketSize);
+            bucketSize *= BRANCH;
+        }
+    }
+
+    private void addLevel(int level, int bucketSize) {
+        int buckets = (count + bucketSize - 1) / bucketSize;
+        float[] levelMins = new float[streaming ? Math.max(buckets * 2, BRANCH) : buckets];
+        float[] levelMaxs = new float[levelMins.length];
+
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            if (level == 1) {
+                int end = Math.min(count, (bucket + 1) * bucketSize);
+                for (int i = bucket * bucketSize; i < end; i++) {
+                    float value = get(i);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            } else {
+                float[] belowMins = mins[level - 2];
+                float[] belowMaxs = maxs[level - 2];
+                int belowBuckets = (count + bucketSize / BRANCH - 1) / (bucketSize / BRANCH);
+                int end = Math.min(belowBuckets, (bucket + 1) * BRANCH);
+                for (int i = bucket * BRANCH; i < end; i++) {
+                    min = Math.min(min, belowMins[i]);
+                    max = Math.max(max, belowMaxs[i]);
+                }
+            }
+            levelMins[bucket] = min;
+            levelMaxs[bucket] = max;
+        }
+
+        mins = Arrays.copyOf(mins, level);
+        maxs = Arrays.copyOf(maxs, level);
+        mins[level - 1] = levelMins;
+        maxs[level - 1] = levelMaxs;
+    }
+
+    private void ensureBucket(int level, int bucket) {
+        if (bucket >= mins[level - 1].length) {
+            mins[level - 1] = Arrays.copyOf(mins[level - 1], mins[level - 1].length * 2);
+            maxs[level - 1] = Arrays.copyOf(maxs[level - 1], maxs[level - 1].length * 2);
+        }
+    }
+}
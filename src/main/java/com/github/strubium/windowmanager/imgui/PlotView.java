@@ -0,0 +1,126 @@
+package com.github.strubium.windowmanager.imgui;
+
+/**
+ * The visible range of a plot drawn with {@link GuiBuilder#addPlot}, updated as the user pans and zooms.
+ * Scroll to zoom, drag to pan and double-click to show the whole series again.
+ *
+ * @author strubium
+ */
+public class PlotView {
+    private double start;
+    private double end;
+    private boolean follow = true;
+    private boolean autoFitY = true;
+    private float yMin;
+    private float yMax;
+
+    /**
+     * Shows a range of samples and stops following new samples
+     *
+     * @param start The first visible sample
+     * @param end The sample after the last visible one
+     */
+    public void setRange(double start, double end) {
+        this.start = start;
+        this.end = end;
+        this.follow = false;
+    }
+
+    /**
+     * Keeps the newest samples of a streaming series in view
+     *
+     * @param follow true to scroll along as samples are appended
+     */
+    public void setFollow(boolean follow) {
+        this.follow = follow;
+    }
+
+    /**
+     * Shows the whole series and follows new samples again
+     */
+    public void reset() {
+        start = 0;
+        end = 0;
+        follow = true;
+    }
+
+    /**
+     * Fixes the vertical range instead of fitting it to the visible samples
+     *
+     * @param min The value at the bottom of the plot
+     * @param max The value at the top of the plot
+     */
+    public void setYRange(float min, float max) {
+        this.yMin = min;
+        this.yMax = max;
+        this.autoFitY = false;
+    }
+
+    /**
+     * Fits the vertical range to the visible samples every frame
+     */
+    public void setAutoFitY() {
+        this.autoFitY = true;
+    }
+
+    /**
+     * @return The first visible sample
+     */
+    public double getStart() {
+        return start;
+    }
+
+    /**
+     * @return The sample after the last visible one
+     */
+    public double getEnd() {
+        return end;
+    }
+
+    void clamp(int count) {
+        double width = end - start;
+        if (width <= 0 || width > count) {
+            // Nothing chosen yet, or the series is smaller than the view
+            start = 0;
+            end = count;
+            return;
+        }
+        if (follow) {
+            start = count - width;
+            end = count;
+        }
+        if (start < 0) {
+            end -= start;
+            start = 0;
+        }
+        if (end > count) {
+            start -= end - count;
+            end = count;
+        }
+    }
+
+    void zoom(double anchor, double factor) {
+        double width = Math.max((end - start) * factor, 2);
+        start = anchor - (anchor - start) * (width / (end - start));
+        end = start + width;
+        follow = false;
+    }
+
+    void pan(double samples) {
+        start += samples;
+        end += samples;
+        follow = false;
+    }
+
+    boolean isAutoFitY() {
+        return autoFitY;
+    }
+
+    float getYMin() {
+        return yMin;
+    }
+
+    float getYMax() {
+        return yMax;
+    }
+}
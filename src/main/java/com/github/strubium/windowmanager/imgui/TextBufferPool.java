@@ -0,0 +1,97 @@
+package com.github.strubium.windowmanager.imgui;
+
+import imgui.type.ImString;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reuses the {@link ImString} buffers of text inputs, so forms that come and go don't allocate new buffers each time.
+ * <p>
+ * Buffers are kept by size. A buffer with a maximum length is fixed at the UTF-8 size of that many characters of any
+ * script, so the limit counts characters rather than bytes, one without grows as text is typed. ImGui only stops
+ * typing at the size of the buffer, draw it with {@link GuiBuilder#addTextInput(String, ImString, String, int)} and
+ * {@link #getMaxLength(ImString)} to stop at the character limit. Only use it from the render thread.
+ *
+ * @author strubium
+ */
+public class TextBufferPool {
+    /** The starting size of buffers without a maximum length */
+    public static final int DEFAULT_CAPACITY = 256;
+    // The most UTF-8 bytes one character can take
+    private static final int BYTES_PER_CHARACTER = 4;
+
+    private final Map<Integer, ArrayDeque<ImString>> fixed = new HashMap<>();
+    private final ArrayDeque<ImString> growable = new ArrayDeque<>();
+
+    /**
+     * Takes an empty buffer from the pool, or creates one
+     *
+     * @param maxLength The most characters the buffer may hold, or 0 or less for no limit
+     * @return The buffer, give it back with {@link #release(ImString)}
+     */
+    public ImString acquire(int maxLength) {
+        ImString buffer;
+        if (maxLength > 0) {
+            int bytes = maxLength * BYTES_PER_CHARACTER;
+            ArrayDeque<ImString> free = fixed.get(bytes);
+            buffer = free != null ? free.poll() : null;
+            if (buffer == null) {
+                buffer = new ImString(bytes);
+                buffer.inputData.isResizable = false;
+                return buffer;
+            }
+        } else {
+            buffer = growable.poll();
+            if (buffer == null) {
+                buffer = new ImString(DEFAULT_CAPACITY);
+                buffer.inputData.isResizable = true;
+                return buffer;
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Takes a buffer from the pool and fills it
+     *
+     * @param maxLength The most characters the buffer may hold, or 0 or less for no limit
+     * @param text The starting text, cut off at the maximum length
+     * @return The buffer, give it back with {@link #release(ImString)}
+     */
+    public ImString acquire(int maxLength, String text) {
+        ImString buffer = acquire(maxLength);
+        if (maxLength > 0 && text.codePointCount(0, text.length()) > maxLength) {
+            text = text.substring(0, text.offsetByCodePoints(0, maxLength));
+        }
+        if (!text.isEmpty()) {
+            buffer.set(text, maxLength <= 0);
+        }
+        return buffer;
+    }
+
+    /**
+     * Gets the character limit of a buffer from this pool
+     *
+     * @param buffer A buffer from {@link #acquire(int)}
+     * @return The most characters it may hold, or 0 for no limit
+     */
+    public static int getMaxLength(ImString buffer) {
+        return buffer.inputData.isResizable ? 0 : (buffer.getBufferSize() - 1) / BYTES_PER_CHARACTER;
+    }
+
+    /**
+     * Keeps a buffer for later, it is emptied when it is taken again
+     *
+     * @param buffer A buffer from {@link #acquire(int)}
+     */
+    public void release(ImString buffer) {
+        if (buffer.inputData.isResizable) {
+            growable.add(buffer);
+        } else {
+            fixed.computeIfAbsent(buffer.getBufferSize() - 1, size -> new ArrayDeque<>()).add(buffer);
+        }
+    }
+}
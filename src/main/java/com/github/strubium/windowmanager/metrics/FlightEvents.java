@@ -0,0 +1,224 @@
+package com.github.strubium.windowmanager.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Emits Java Flight Recorder events for frames and UI work, so stalls can be lined up with GC and JIT activity
+ * in a recording. On JVMs without JFR every method does nothing.
+ * <p>
+ * Every event type can be turned on and off on its own through the recording settings, with
+ * {@value #SETTINGS_RESOURCE} enabling all of them. A disabled event costs one check per call. The JVM only reads
+ * settings from a file on disk, so write the settings out once with {@link #extractSettings(String)} and record with
+ * <pre>
+ * java -XX:StartFlightRecording:settings=default,settings=windowmanager.jfc,filename=ui.jfr ...
+ * </pre>
+ * or record from code with {@link #startRecording(String)}, which reads them from the library's resources.
+ * <p>
+ * The begin methods return a handle to pass to the matching end method, null when the event is disabled.
+ *
+ * @author strubium
+ */
+public final class FlightEvents {
+    /** The classpath resource with the settings that enable every event of the library */
+    public static final String SETTINGS_RESOURCE = "/jfr/windowmanager.jfc";
+
+    private static final boolean AVAILABLE = isJfrAvailable();
+
+    private FlightEvents() {
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if this JVM has Java Flight Recorder
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Records to a file with the JDK's default settings plus every event of the library, until {@link #stopRecording()}
+     *
+     * @param path The .jfr file to write when the recording stops
+     */
+    public static void startRecording(String path) {
+        if (!AVAILABLE) {
+            System.err.println("Java Flight Recorder isn't available on this JVM, not recording");
+            return;
+        }
+        try {
+            JfrEvents.startRecording(path);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to start flight recording " + path, e);
+        }
+    }
+
+    /**
+     * Writes the settings that enable every event of the library to a file, to pass to
+     * {@code -XX:StartFlightRecording:settings=...} or JDK Mission Control
+     *
+     * @param path The .jfc file to write
+     */
+    public static void extractSettings(String path) {
+        try (InputStream in = FlightEvents.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Missing " + SETTINGS_RESOURCE);
+            }
+            Files.copy(in, Paths.get(path), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write flight recorder settings " + path, e);
+        }
+    }
+
+    /**
+     * Stops the recording started with {@link #startRecording(String)} and writes it
+     */
+    public static void stopRecording() {
+        if (AVAILABLE) {
+            JfrEvents.stopRecording();
+        }
+    }
+
+    /**
+     * Starts a frame event
+     *
+     * @return The handle for {@link #endFrame}
+     */
+    public static Object beginFrame() {
+        return AVAILABLE ? JfrEvents.beginFrame() : null;
+    }
+
+    /**
+     * Ends a frame event
+     *
+     * @param handle The handle from {@link #beginFrame()}
+     * @param frame The number of the frame
+     */
+    public static void endFrame(Object handle, long frame) {
+        if (handle != null) {
+            JfrEvents.endFrame(handle, frame);
+        }
+    }
+
+    /**
+     * Starts an input drain event
+     *
+     * @return The handle for {@link #endInputDrain}
+     */
+    public static Object beginInputDrain() {
+        return AVAILABLE ? JfrEvents.beginInputDrain() : null;
+    }
+
+    /**
+     * Ends an input drain event
+     *
+     * @param handle The handle from {@link #beginInputDrain()}
+     * @param source Where the input came from
+     */
+    public static void endInputDrain(Object handle, String source) {
+        if (handle != null) {
+            JfrEvents.endInputDrain(handle, source);
+        }
+    }
+
+    /**
+     * Starts an HTML compile event
+     *
+     * @return The handle for {@link #endHtmlCompile}
+     */
+    public static Object beginHtmlCompile() {
+        return AVAILABLE ? JfrEvents.beginHtmlCompile() : null;
+    }
+
+    /**
+     * Ends an HTML compile event
+     *
+     * @param handle The handle from {@link #beginHtmlCompile()}
+     * @param length The length of the HTML
+     * @param elements The number of elements compiled
+     */
+    public static void endHtmlCompile(Object handle, int length, int elements) {
+        if (handle != null) {
+            JfrEvents.endHtmlCompile(handle, length, elements);
+        }
+    }
+
+    /**
+     * Starts a GUI screen render event
+     *
+     * @return The handle for {@link #endScreenRender}
+     */
+    public static Object beginScreenRender() {
+        return AVAILABLE ? JfrEvents.beginScreenRender() : null;
+    }
+
+    /**
+     * Ends a GUI screen render event
+     *
+     * @param handle The handle from {@link #beginScreenRender()}
+     * @param screen The name the screen is registered with
+     */
+    public static void endScreenRender(Object handle, String screen) {
+        if (handle != null) {
+            JfrEvents.endScreenRender(handle, screen);
+        }
+    }
+
+    /**
+     * Starts a font atlas build event
+     *
+     * @return The handle for {@link #endFontAtlasBuild}
+     */
+    public static Object beginFontAtlasBuild() {
+        return AVAILABLE ? JfrEvents.beginFontAtlasBuild() : null;
+    }
+
+    /**
+     * Ends a font atlas build event
+     *
+     * @param handle The handle from {@link #beginFontAtlasBuild()}
+     * @param kind How the atlas was built: plain, cached or dynamic
+     * @param glyphs The number of glyphs, or 0 if unknown
+     */
+    public static void endFontAtlasBuild(Object handle, String kind, int glyphs) {
+        if (handle != null) {
+            JfrEvents.endFontAtlasBuild(handle, kind, glyphs);
+        }
+    }
+
+    /**
+     * Starts a texture upload event
+     *
+     * @return The handle for {@link #endTextureUpload}
+     */
+    public static Object beginTextureUpload() {
+        return AVAILABLE ? JfrEvents.beginTextureUpload() : null;
+    }
+
+    /**
+     * Ends a texture upload event
+     *
+     * @param handle The handle from {@link #beginTextureUpload()}
+     * @param path The path of the image
+     * @param width The width of the texture
+     * @param height The height of the texture
+     * @param bytes The size of the texture in bytes
+     */
+    public static void endTextureUpload(Object handle, String path, int width, int height, long bytes) {
+        if (handle != null) {
+            JfrEvents.endTextureUpload(handle, path, width, height, bytes);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.strubium.windowmanager.metrics;
+
+/**
+ * The values {@link FrameMetrics} records once per frame
+ *
+ * @author strubium
+ */
+public enum FrameMetric {
+    /** Wall time of the whole frame */
+    FRAME("frame", "Frame", true, "Wall time of each frame"),
+    /** glfwPollEvents and {@link com.github.strubium.windowmanager.imgui.ImguiHandler#handleInput} */
+    POLL_INPUT("poll_input", "Poll/input", true, "Time per frame spent polling events and handling input"),
+    /** {@link com.github.strubium.windowmanager.imgui.ImguiHandler#newFrame} */
+    NEW_FRAME("new_frame", "New frame", true, "Time per frame spent in ImguiHandler.newFrame"),
+    /** {@link com.github.strubium.windowmanager.imgui.GuiManager#render} */
+    GUI_RENDER("gui_render", "GUI render", true, "Time per frame spent in GuiManager.render"),
+    /** ImGui.render */
+    IMGUI_RENDER("imgui_render", "ImGui render", true, "Time per frame spent in ImGui.render"),
+    /** ImGuiImplGl3.renderDrawData */
+    RENDER_DRAW_DATA("render_draw_data", "Draw data", true, "Time per frame spent in ImGuiImplGl3.renderDrawData"),
+    /** glfwSwapBuffers */
+    SWAP("swap", "Swap", true, "Time per frame spent in glfwSwapBuffers"),
+    /** Bytes allocated on the render thread during the frame */
+    ALLOCATED_BYTES("allocated_bytes", "Allocated", false, "Bytes allocated on the render thread per frame"),
+    /** Vertices in the ImGui draw data */
+    VERTICES("vertices", "Vertices", false, "Vertices in the ImGui draw data per frame"),
+    /** Indices in the ImGui draw data */
+    INDICES("indices", "Indices", false, "Indices in the ImGui draw data per frame"),
+    /** Draw commands in the ImGui draw data */
+    DRAW_COMMANDS("draw_commands", "Draw commands", false, "Draw commands in the ImGui draw data per frame");
+
+    private final String id;
+    private final String label;
+    private final boolean time;
+    private final String description;
+
+    FrameMetric(String id, String label, boolean time, String description) {
+        this.id = id;
+        this.label = label;
+        this.time = time;
+        this.description = description;
+    }
+
+    /**
+     * @return The name used in exported metrics
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The name shown in the overlay
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return A sentence describing the metric, used as the help text of exported metrics
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return true if the metric is a duration in nanoseconds, false if it is a count
+     */
+    public boolean isTime() {
+        return time;
+    }
+}
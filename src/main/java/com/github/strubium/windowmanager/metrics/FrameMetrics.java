@@ -0,0 +1,149 @@
+package com.github.strubium.windowmanager.metrics;
+
+import imgui.ImDrawData;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Times each phase of a frame and keeps the results in rolling {@link Histogram}s.
+ * <p>
+ * The library times its own phases (input, newFrame, GUI render, ImGui render, draw data and swap) and the frame
+ * ends in {@link com.github.strubium.windowmanager.window.WindowManager#swapAndPoll()}. Everything is recorded on the
+ * render thread, or under the registry's ImGui lock with render threads, the histograms can be read from any thread,
+ * e.g. by a {@link MetricsExporter}.
+ * Recording is off until {@link #setEnabled(boolean)} is called.
+ *
+ * @author strubium
+ */
+public class FrameMetrics {
+    private static final int WINDOW = 600;
+    private static final FrameMetric[] METRICS = FrameMetric.values();
+
+    private static final Histogram[] histograms = new Histogram[METRICS.length];
+    // The values of the frame in progress, only touched by the render thread
+    private static final long[] current = new long[METRICS.length];
+    private static volatile boolean enabled;
+    private static long frameStart;
+    private static long allocatedAtFrameStart;
+    private static com.sun.management.ThreadMXBean allocationBean;
+
+    static {
+        for (int i = 0; i < METRICS.length; i++) {
+            histograms[i] = new Histogram(WINDOW);
+        }
+    }
+
+    /**
+     * Turn recording on or off
+     *
+     * @param enabled true to record every frame
+     */
+    public static void setEnabled(boolean enabled) {
+        if (enabled && allocationBean == null) {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                allocationBean = (com.sun.management.ThreadMXBean) bean;
+                allocationBean.setThreadAllocatedMemoryEnabled(true);
+            } else {
+                System.err.println("Per-thread allocation counting isn't supported by this JVM");
+            }
+        }
+        frameStart = 0;
+        FrameMetrics.enabled = enabled;
+    }
+
+    /**
+     * @return true if frames are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing a phase
+     *
+     * @return The start time to pass to {@link #stop}, or 0 if recording is off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stops timing a phase, a phase timed more than once in a frame adds up
+     *
+     * @param phase The phase
+     * @param start The value returned by {@link #start()}
+     */
+    public static void stop(FrameMetric phase, long start) {
+        if (start != 0 && enabled) {
+            current[phase.ordinal()] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Adds time measured outside the frame's thread, or outside the lock that guards recording, to a phase
+     *
+     * @param phase The phase
+     * @param nanos The time to add, in nanoseconds
+     */
+    public static void add(FrameMetric phase, long nanos) {
+        if (enabled) {
+            current[phase.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Counts the vertices, indices and draw commands of the frame
+     *
+     * @param drawData The draw data passed to the renderer
+     */
+    public static void countDrawData(ImDrawData drawData) {
+        if (!enabled) {
+            return;
+        }
+        int commands = 0;
+        for (int i = 0; i < drawData.getCmdListsCount(); i++) {
+            commands += drawData.getCmdListCmdBufferSize(i);
+        }
+        current[FrameMetric.VERTICES.ordinal()] += drawData.getTotalVtxCount();
+        current[FrameMetric.INDICES.ordinal()] += drawData.getTotalIdxCount();
+        current[FrameMetric.DRAW_COMMANDS.ordinal()] += commands;
+    }
+
+    /**
+     * Ends the frame, moving its values into the histograms
+     */
+    public static void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long allocated = allocationBean != null ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+
+        // The first frame after enabling has no start to measure from
+        if (frameStart != 0) {
+            current[FrameMetric.FRAME.ordinal()] = now - frameStart;
+            current[FrameMetric.ALLOCATED_BYTES.ordinal()] = allocated - allocatedAtFrameStart;
+            for (int i = 0; i < METRICS.length; i++) {
+                histograms[i].record(current[i]);
+            }
+        }
+        for (int i = 0; i < METRICS.length; i++) {
+            current[i] = 0;
+        }
+        frameStart = now;
+        allocatedAtFrameStart = allocated;
+    }
+
+    /**
+     * Gets the histogram of a metric
+     *
+     * @param metric The metric
+     * @return The histogram, in nanoseconds for time metrics
+     */
+    public static Histogram getHistogram(FrameMetric metric) {
+        return histograms[metric.ordinal()];
+    }
+}
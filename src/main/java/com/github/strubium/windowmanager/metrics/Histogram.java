@@ -0,0 +1,142 @@
+package com.github.strubium.windowmanager.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A rolling window over the most recent samples of a metric. One thread records while any other thread may read,
+ * without locks: samples go into a ring buffer of atomics and readers copy it before working out percentiles.
+ *
+ * @author strubium
+ */
+public class Histogram {
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Create a Histogram
+     *
+     * @param capacity The number of recent samples to keep
+     */
+    public Histogram(int capacity) {
+        this.samples = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Adds a sample, replacing the oldest once the window is full
+     *
+     * @param value The sample
+     */
+    public void record(long value) {
+        long index = count.get();
+        samples.set((int) (index % samples.length()), value);
+        sum.addAndGet(value);
+        // Publish the sample only after it's written, so readers never see a slot that isn't filled yet
+        count.lazySet(index + 1);
+    }
+
+    /**
+     * @return The number of samples ever recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The sum of every sample ever recorded
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Copies the most recent samples, oldest first
+     *
+     * @param out Receives the samples, at most out.length of them
+     * @return The number of samples copied
+     */
+    public int copyRecent(long[] out) {
+        long end = count.get();
+        int n = (int) Math.min(Math.min(end, samples.length()), out.length);
+        for (int i = 0; i < n; i++) {
+            out[i] = samples.get((int) ((end - n + i) % samples.length()));
+        }
+        return n;
+    }
+
+    /**
+     * Works out percentiles over the samples in the window
+     *
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[samples.length()];
+        int n = copyRecent(values);
+        Arrays.sort(values, 0, n);
+        return new Snapshot(getCount(), getSum(), percentile(values, n, 0.5), percentile(values, n, 0.99),
+                n == 0 ? 0 : values[n - 1]);
+    }
+
+    private static long percentile(long[] sorted, int n, double quantile) {
+        if (n == 0) {
+            return 0;
+        }
+        return sorted[Math.min(n - 1, (int) Math.ceil(quantile * n) - 1)];
+    }
+
+    /**
+     * Percentiles of a {@link Histogram} at one point in time
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long sum;
+        private final long p50;
+        private final long p99;
+        private final long max;
+
+        Snapshot(long count, long sum, long p50, long p99, long max) {
+            this.count = count;
+            this.sum = sum;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        /**
+         * @return The number of samples ever recorded
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The sum of every sample ever recorded
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return The median of the window
+         */
+        public long getP50() {
+            return p50;
+        }
+
+        /**
+         * @return The 99th percentile of the window
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        /**
+         * @return The largest sample in the window
+         */
+        public long getMax() {
+            return max;
+        }
+    }
+}
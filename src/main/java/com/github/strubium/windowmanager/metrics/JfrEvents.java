@@ -0,0 +1,229 @@
+package com.github.strubium.windowmanager.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The JFR event types, only loaded through {@link FlightEvents} once it knows JFR is there
+ *
+ * @author strubium
+ */
+final class JfrEvents {
+    private static Recording recording;
+
+    private JfrEvents() {
+    }
+
+    static synchronized void startRecording(String path) throws IOException, ParseException {
+        if (recording != null) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        try (InputStream in = JfrEvents.class.getResourceAsStream(FlightEvents.SETTINGS_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Missing " + FlightEvents.SETTINGS_RESOURCE);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                settings.putAll(Configuration.create(reader).getSettings());
+            }
+        }
+
+        recording = new Recording(settings);
+        recording.setName("JavaWindowManager");
+        recording.setDestination(Paths.get(path));
+        recording.start();
+    }
+
+    static synchronized void stopRecording() {
+        if (recording != null) {
+            recording.stop();
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @Name("com.github.strubium.windowmanager.Frame")
+    @Label("Frame")
+    @Category({"JavaWindowManager", "Frame"})
+    @Description("One frame, from the end of the previous swapAndPoll, or WindowRegistry loop pass, to the end of this one")
+    static final class FrameEvent extends Event {
+        @Label("Frame Number")
+        long frame;
+    }
+
+    @Name("com.github.strubium.windowmanager.InputDrain")
+    @Label("Input Drain")
+    @Category({"JavaWindowManager", "Frame"})
+    @Description("Polling GLFW events or copying input into ImGui")
+    static final class InputDrainEvent extends Event {
+        @Label("Source")
+        String source;
+    }
+
+    @Name("com.github.strubium.windowmanager.HtmlCompile")
+    @Label("HTML Compile")
+    @Category({"JavaWindowManager", "HTML"})
+    @Description("Parsing HTML into a CompiledHtml")
+    static final class HtmlCompileEvent extends Event {
+        @Label("Length")
+        @Description("Characters of HTML")
+        int length;
+
+        @Label("Elements")
+        int elements;
+    }
+
+    @Name("com.github.strubium.windowmanager.ScreenRender")
+    @Label("GUI Screen Render")
+    @Category({"JavaWindowManager", "GUI"})
+    @Description("Building one GuiManager screen")
+    static final class ScreenRenderEvent extends Event {
+        @Label("Screen")
+        String screen;
+    }
+
+    @Name("com.github.strubium.windowmanager.FontAtlasBuild")
+    @Label("Font Atlas Build")
+    @Category({"JavaWindowManager", "Assets"})
+    @Description("Building and uploading the ImGui font atlas")
+    static final class FontAtlasBuildEvent extends Event {
+        @Label("Kind")
+        @Description("How the atlas was built: plain, cached or dynamic")
+        String kind;
+
+        @Label("Glyphs")
+        int glyphs;
+    }
+
+    @Name("com.github.strubium.windowmanager.TextureUpload")
+    @Label("Texture Upload")
+    @Category({"JavaWindowManager", "Assets"})
+    @Description("Uploading a decoded image to the GPU")
+    static final class TextureUploadEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    // Looked up once, so a disabled event is rejected before anything is allocated
+    private static final EventType FRAME = EventType.getEventType(FrameEvent.class);
+    private static final EventType INPUT_DRAIN = EventType.getEventType(InputDrainEvent.class);
+    private static final EventType HTML_COMPILE = EventType.getEventType(HtmlCompileEvent.class);
+    private static final EventType SCREEN_RENDER = EventType.getEventType(ScreenRenderEvent.class);
+    private static final EventType FONT_ATLAS_BUILD = EventType.getEventType(FontAtlasBuildEvent.class);
+    private static final EventType TEXTURE_UPLOAD = EventType.getEventType(TextureUploadEvent.class);
+
+    static Object begin(Event event) {
+        event.begin();
+        return event;
+    }
+
+    static Object beginFrame() {
+        return FRAME.isEnabled() ? begin(new FrameEvent()) : null;
+    }
+
+    static void endFrame(Object handle, long frame) {
+        FrameEvent event = (FrameEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.frame = frame;
+            event.commit();
+        }
+    }
+
+    static Object beginInputDrain() {
+        return INPUT_DRAIN.isEnabled() ? begin(new InputDrainEvent()) : null;
+    }
+
+    static void endInputDrain(Object handle, String source) {
+        InputDrainEvent event = (InputDrainEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.commit();
+        }
+    }
+
+    static Object beginHtmlCompile() {
+        return HTML_COMPILE.isEnabled() ? begin(new HtmlCompileEvent()) : null;
+    }
+
+    static void endHtmlCompile(Object handle, int length, int elements) {
+        HtmlCompileEvent event = (HtmlCompileEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.length = length;
+            event.elements = elements;
+            event.commit();
+        }
+    }
+
+    static Object beginScreenRender() {
+        return SCREEN_RENDER.isEnabled() ? begin(new ScreenRenderEvent()) : null;
+    }
+
+    static void endScreenRender(Object handle, String screen) {
+        ScreenRenderEvent event = (ScreenRenderEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.screen = screen;
+            event.commit();
+        }
+    }
+
+    static Object beginFontAtlasBuild() {
+        return FONT_ATLAS_BUILD.isEnabled() ? begin(new FontAtlasBuildEvent()) : null;
+    }
+
+    static void endFontAtlasBuild(Object handle, String kind, int glyphs) {
+        FontAtlasBuildEvent event = (FontAtlasBuildEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.glyphs = glyphs;
+            event.commit();
+        }
+    }
+
+    static Object beginTextureUpload() {
+        return TEXTURE_UPLOAD.isEnabled() ? begin(new TextureUploadEvent()) : null;
+    }
+
+    static void endTextureUpload(Object handle, String path, int width, int height, long bytes) {
+        TextureUploadEvent event = (TextureUploadEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.width = width;
+            event.height = height;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.strubium.windowmanager.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the {@link FrameMetrics} histograms to a file in the Prometheus text format, e.g. for the
+ * node_exporter textfile collector. Each metric is a summary with its p50 and p99, plus a gauge with the max.
+ * The quantiles and the max cover the recent frames each histogram keeps, while {@code _sum} and {@code _count} cover
+ * every frame since the start, as Prometheus expects of a summary so {@code rate()} works on them.
+ * The file is replaced atomically where the file system allows it, so scrapers never see half of it.
+ *
+ * @author strubium
+ */
+public class MetricsExporter {
+    private final Path path;
+    private final long periodMillis;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Create a MetricsExporter
+     *
+     * @param path The file to write
+     * @param periodMillis How often to write it, in milliseconds
+     */
+    public MetricsExporter(String path, long periodMillis) {
+        this.path = Paths.get(path).toAbsolutePath();
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * Starts writing the file on a background thread
+     */
+    public void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Metrics Exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                export();
+            } catch (IOException e) {
+                System.err.println("Failed to export metrics to " + path + ": " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops writing, the file is written one last time
+     */
+    public void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        executor = null;
+        try {
+            export();
+        } catch (IOException e) {
+            System.err.println("Failed to export metrics to " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the file now
+     *
+     * @throws IOException If the file couldn't be written
+     */
+    public void export() throws IOException {
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (FrameMetric metric : FrameMetric.values()) {
+                writeMetric(writer, metric, FrameMetrics.getHistogram(metric).snapshot());
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeMetric(Writer writer, FrameMetric metric, Histogram.Snapshot snapshot) throws IOException {
+        String name = "jwm_" + metric.getId() + (metric.isTime() ? "_seconds" : "");
+
+        writer.write("# HELP " + name + " " + metric.getDescription() + ", quantiles over recent frames, sum and count over all frames\n");
+        writer.write("# TYPE " + name + " summary\n");
+        writer.write(name + "{quantile=\"0.5\"} " + format(metric, snapshot.getP50()) + "\n");
+        writer.write(name + "{quantile=\"0.99\"} " + format(metric, snapshot.getP99()) + "\n");
+        writer.write(name + "_sum " + format(metric, snapshot.getSum()) + "\n");
+        writer.write(name + "_count " + snapshot.getCount() + "\n");
+        writer.write("# TYPE " + name + "_max gauge\n");
+        writer.write(name + "_max " + format(metric, snapshot.getMax()) + "\n");
+    }
+
+    private static String format(FrameMetric metric, long value) {
+        // Durations are recorded in nanoseconds, Prometheus wants seconds
+        return metric.isTime() ? Double.toString(value / 1e9) : Long.toString(value);
+    }
+}
@@ -0,0 +1,225 @@
+package com.github.strubium.windowmanager.window;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Keyboard shortcuts such as {@code Ctrl+S}, looked up by key and modifiers in constant time.
+ * <p>
+ * Shortcuts are stored as {@code (mods << 16) | key} in an open addressing table, so dispatching a key press
+ * doesn't allocate or walk a list. Set a table on a window with {@link WindowManager#setAccelerators(AcceleratorTable)}.
+ *
+ * @author strubium
+ */
+public class AcceleratorTable {
+    private static final int MOD_MASK = GLFW_MOD_CONTROL | GLFW_MOD_SHIFT | GLFW_MOD_ALT | GLFW_MOD_SUPER;
+    private static final int EMPTY = -1;
+
+    private int[] keys = new int[16];
+    private Runnable[] actions = new Runnable[16];
+    private int size;
+
+    /**
+     * Create an empty AcceleratorTable
+     */
+    public AcceleratorTable() {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Adds a shortcut, replacing any action the same shortcut had
+     *
+     * @param accelerator The shortcut (Ex: Ctrl+S, Ctrl+Shift+Z, F5)
+     * @param action What the shortcut does
+     */
+    public void put(String accelerator, Runnable action) {
+        int packed = parse(accelerator);
+        put(packed & 0xFFFF, packed >>> 16, action);
+    }
+
+    /**
+     * Adds a shortcut, replacing any action the same shortcut had
+     *
+     * @param key The GLFW key
+     * @param mods The GLFW modifier bits
+     * @param action What the shortcut does
+     */
+    public void put(int key, int mods, Runnable action) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int packed = pack(key, mods);
+        int slot = find(packed);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = packed;
+            size++;
+        }
+        actions[slot] = action;
+    }
+
+    /**
+     * Gets the action of a key press
+     *
+     * @param key The GLFW key
+     * @param mods The GLFW modifier bits, lock keys are ignored
+     * @return The action, or null if the key press isn't a shortcut
+     */
+    public Runnable get(int key, int mods) {
+        int slot = find(pack(key, mods));
+        return keys[slot] == EMPTY ? null : actions[slot];
+    }
+
+    /**
+     * Runs the action of a key press, if it is a shortcut
+     *
+     * @param key The GLFW key
+     * @param mods The GLFW modifier bits
+     * @return true if an action ran
+     */
+    public boolean dispatch(int key, int mods) {
+        Runnable action = get(key, mods);
+        if (action == null) {
+            return false;
+        }
+        action.run();
+        return true;
+    }
+
+    /**
+     * @return The number of shortcuts
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int pack(int key, int mods) {
+        return ((mods & MOD_MASK) << 16) | (key & 0xFFFF);
+    }
+
+    private int find(int packed) {
+        int mask = keys.length - 1;
+        // Keys are small and close together, mix them so neighbours don't collide
+        int slot = (packed * 0x9E3779B9 >>> 16) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != packed) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Runnable[] oldActions = actions;
+        keys = new int[oldKeys.length * 2];
+        actions = new Runnable[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                actions[slot] = oldActions[i];
+            }
+        }
+    }
+
+    /**
+     * Parses a shortcut such as {@code Ctrl+Shift+Z}. Modifiers are Ctrl, Shift, Alt and Super (or Cmd), keys are
+     * letters, digits, punctuation, F1 to F25 and names like Enter, Delete or PageUp.
+     *
+     * @param accelerator The shortcut
+     * @return {@code (mods << 16) | key}
+     * @throws IllegalArgumentException if the shortcut can't be read
+     */
+    public static int parse(String accelerator) {
+        String[] parts = accelerator.trim().split("\\+(?=.)");
+        int mods = 0;
+        for (int i = 0; i < parts.length - 1; i++) {
+            switch (parts[i].trim().toLowerCase(Locale.ROOT)) {
+                case "ctrl":
+                case "control":
+                    mods |= GLFW_MOD_CONTROL;
+                    break;
+                case "shift":
+                    mods |= GLFW_MOD_SHIFT;
+                    break;
+                case "alt":
+                case "option":
+                    mods |= GLFW_MOD_ALT;
+                    break;
+                case "super":
+                case "cmd":
+                case "meta":
+                    mods |= GLFW_MOD_SUPER;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown modifier '" + parts[i] + "' in shortcut " + accelerator);
+            }
+        }
+        int key = parseKey(parts[parts.length - 1].trim());
+        if (key == GLFW_KEY_UNKNOWN) {
+            throw new IllegalArgumentException("Unknown key in shortcut " + accelerator);
+        }
+        return pack(key, mods);
+    }
+
+    private static int parseKey(String name) {
+        if (name.length() == 1) {
+            char c = Character.toUpperCase(name.charAt(0));
+            // GLFW uses ASCII for letters, digits and the punctuation keys of a US layout
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || ",-./;=[\\]`'".indexOf(c) >= 0) {
+                return c;
+            }
+            return GLFW_KEY_UNKNOWN;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.charAt(0) == 'f') {
+            try {
+                int number = Integer.parseInt(lower.substring(1));
+                return number >= 1 && number <= 25 ? GLFW_KEY_F1 + number - 1 : GLFW_KEY_UNKNOWN;
+            } catch (NumberFormatException ignored) {
+                // Not a function key
+            }
+        }
+        switch (lower) {
+            case "space":
+                return GLFW_KEY_SPACE;
+            case "enter":
+            case "return":
+                return GLFW_KEY_ENTER;
+            case "tab":
+                return GLFW_KEY_TAB;
+            case "esc":
+            case "escape":
+                return GLFW_KEY_ESCAPE;
+            case "backspace":
+                return GLFW_KEY_BACKSPACE;
+            case "del":
+            case "delete":
+                return GLFW_KEY_DELETE;
+            case "ins":
+            case "insert":
+                return GLFW_KEY_INSERT;
+            case "home":
+                return GLFW_KEY_HOME;
+            case "end":
+                return GLFW_KEY_END;
+            case "pageup":
+                return GLFW_KEY_PAGE_UP;
+            case "pagedown":
+                return GLFW_KEY_PAGE_DOWN;
+            case "up":
+                return GLFW_KEY_UP;
+            case "down":
+                return GLFW_KEY_DOWN;
+            case "left":
+                return GLFW_KEY_LEFT;
+            case "right":
+                return GLFW_KEY_RIGHT;
+            case "plus":
+                return GLFW_KEY_EQUAL;
+            default:
+                return GLFW_KEY_UNKNOWN;
+        }
+    }
+}
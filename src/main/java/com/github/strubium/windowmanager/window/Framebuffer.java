@@ -0,0 +1,171 @@
+package com.github.strubium.windowmanager.window;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * An offscreen framebuffer with an RGBA color texture and a depth buffer.
+ * Frames drawn while it is bound end up in its texture instead of on screen and can be read back with {@link #readPixels}.
+ *
+ * @author strubium
+ */
+public class Framebuffer {
+    private final int width;
+    private final int height;
+    // Holds one row while readPixels flips the image
+    private final byte[] row;
+    private int fbo;
+    private int colorTexture;
+    private int depthBuffer;
+
+    /**
+     * Create a Framebuffer, needs a current OpenGL context
+     *
+     * @param width The width in pixels
+     * @param height The height in pixels
+     */
+    public Framebuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.row = new byte[width * 4];
+
+        int previousTexture = glGetInteger(GL_TEXTURE_BINDING_2D);
+        colorTexture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, colorTexture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        glBindTexture(GL_TEXTURE_2D, previousTexture);
+
+        depthBuffer = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, depthBuffer);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH24_STENCIL8, width, height);
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+
+        fbo = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorTexture, 0);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_STENCIL_ATTACHMENT, GL_RENDERBUFFER, depthBuffer);
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            destroy();
+            throw new RuntimeException("Failed to create the framebuffer (status 0x" + Integer.toHexString(status) + ")");
+        }
+    }
+
+    /**
+     * Draw into this framebuffer from now on
+     */
+    public void bind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, fbo);
+        glViewport(0, 0, width, height);
+    }
+
+    /**
+     * Draw to the window again
+     */
+    public void unbind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    }
+
+    /**
+     * Reads the current image into a new buffer
+     *
+     * @return The pixels as RGBA bytes, top row first
+     */
+    public ByteBuffer readPixels() {
+        ByteBuffer pixels = BufferUtils.createByteBuffer(getByteSize());
+        readPixels(pixels);
+        return pixels;
+    }
+
+    /**
+     * Reads the current image into a buffer, starting at its position. The position is left unchanged.
+     * Call this after the frame is drawn and before it is cleared for the next one, on one thread at a time.
+     *
+     * @param target The buffer to fill with RGBA bytes, top row first. Must be direct and have {@link #getByteSize()} bytes remaining
+     */
+    public void readPixels(ByteBuffer target) {
+        if (target.remaining() < getByteSize()) {
+            throw new IllegalArgumentException("Need " + getByteSize() + " bytes to read the framebuffer, got " + target.remaining());
+        }
+
+        int previousRead = glGetInteger(GL_READ_FRAMEBUFFER_BINDING);
+        int previousAlignment = glGetInteger(GL_PACK_ALIGNMENT);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, fbo);
+        glPixelStorei(GL_PACK_ALIGNMENT, 4);
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, target);
+        glPixelStorei(GL_PACK_ALIGNMENT, previousAlignment);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, previousRead);
+
+        // OpenGL reads the bottom row first, flip so the image matches decoded images
+        int stride = row.length;
+        int start = target.position();
+        ByteBuffer source = target.duplicate();
+        for (int i = 0; i < height / 2; i++) {
+            int topOffset = start + i * stride;
+            int bottomOffset = start + (height - 1 - i) * stride;
+            target.position(topOffset);
+            target.get(row);
+            source.limit(bottomOffset + stride);
+            source.position(bottomOffset);
+            target.position(topOffset);
+            target.put(source);
+            target.position(bottomOffset);
+            target.put(row);
+        }
+        target.position(start);
+    }
+
+    /**
+     * @return The OpenGL texture holding the image
+     */
+    public int getColorTexture() {
+        return colorTexture;
+    }
+
+    /**
+     * @return The width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The size of the image read by {@link #readPixels}, in bytes
+     */
+    public int getByteSize() {
+        return width * height * 4;
+    }
+
+    /**
+     * Deletes the framebuffer and its attachments
+     */
+    public void destroy() {
+        if (fbo != 0) {
+            glDeleteFramebuffers(fbo);
+            fbo = 0;
+        }
+        if (depthBuffer != 0) {
+            glDeleteRenderbuffers(depthBuffer);
+            depthBuffer = 0;
+        }
+        if (colorTexture != 0) {
+            glDeleteTextures(colorTexture);
+            colorTexture = 0;
+        }
+    }
+}
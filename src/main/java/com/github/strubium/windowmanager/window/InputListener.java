@@ -0,0 +1,51 @@
+package com.github.strubium.windowmanager.window;
+
+/**
+ * Receives window input events, with the same arguments as the matching GLFW callbacks
+ *
+ * @author strubium
+ */
+public interface InputListener {
+
+    /**
+     * A key was pressed, repeated or released
+     *
+     * @param key The GLFW key code
+     * @param scancode The platform scancode
+     * @param action GLFW_PRESS, GLFW_REPEAT or GLFW_RELEASE
+     * @param mods The modifier bits
+     */
+    void onKey(int key, int scancode, int action, int mods);
+
+    /**
+     * A character was typed
+     *
+     * @param codepoint The unicode codepoint
+     */
+    void onChar(int codepoint);
+
+    /**
+     * A mouse button was pressed or released
+     *
+     * @param button The GLFW mouse button
+     * @param action GLFW_PRESS or GLFW_RELEASE
+     * @param mods The modifier bits
+     */
+    void onMouseButton(int button, int action, int mods);
+
+    /**
+     * The cursor moved
+     *
+     * @param x The x position in window coordinates
+     * @param y The y position in window coordinates
+     */
+    void onCursorPos(double x, double y);
+
+    /**
+     * The mouse wheel or touchpad scrolled
+     *
+     * @param xOffset The horizontal scroll
+     * @param yOffset The vertical scroll
+     */
+    void onScroll(double xOffset, double yOffset);
+}
@@ -0,0 +1,224 @@
+package com.github.strubium.windowmanager.window;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Carries the input of a window from the main thread, where GLFW delivers it, to the thread that renders the window.
+ * <p>
+ * The main thread adds events through the {@link InputListener} methods and {@link #updateWindowState()} after every
+ * poll. The render thread takes them with {@link #drain(InputListener)} once per frame and reads the window state,
+ * so it never has to call GLFW functions that are only allowed on the main thread.
+ * <p>
+ * The clipboard is one of those, so the main thread keeps a copy of it: read when a window gains focus and when a
+ * paste shortcut is pressed, and written when the main thread next updates the window state.
+ *
+ * @author strubium
+ */
+public class InputQueue implements InputListener {
+    private static final int KEY = 0;
+    private static final int CHAR = 1;
+    private static final int MOUSE_BUTTON = 2;
+    private static final int CURSOR_POS = 3;
+    private static final int SCROLL = 4;
+
+    // The system clipboard is shared by every window, so is its copy
+    private static final AtomicReference<String> PENDING_CLIPBOARD = new AtomicReference<>();
+    private static volatile String clipboard = "";
+
+    private final long window;
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+
+    private volatile int width;
+    private volatile int height;
+    private volatile int framebufferWidth;
+    private volatile int framebufferHeight;
+    private volatile boolean focused;
+
+    /**
+     * Create an InputQueue
+     *
+     * @param window The GLFW window handle
+     */
+    public InputQueue(long window) {
+        this.window = window;
+    }
+
+    /**
+     * Reads the window and framebuffer size and the focus of the window. Call this on the main thread after polling events.
+     */
+    public void updateWindowState() {
+        int[] w = new int[1];
+        int[] h = new int[1];
+        glfwGetWindowSize(window, w, h);
+        width = w[0];
+        height = h[0];
+        glfwGetFramebufferSize(window, w, h);
+        framebufferWidth = w[0];
+        framebufferHeight = h[0];
+        boolean nowFocused = glfwGetWindowAttrib(window, GLFW_FOCUSED) != 0;
+        writePendingClipboard();
+        if (nowFocused && !focused) {
+            // Other applications may have changed the clipboard while the window was in the background
+            readClipboard();
+        }
+        focused = nowFocused;
+    }
+
+    /**
+     * Returns the clipboard as the main thread last saw it, or as last set with {@link #setClipboard(String)}.
+     * Safe to call from any thread.
+     *
+     * @return The clipboard text, empty if it holds no text
+     */
+    public static String getClipboard() {
+        return clipboard;
+    }
+
+    /**
+     * Sets the clipboard. The system clipboard is written by the main thread the next time it updates a window's
+     * state, it is woken up for that. Safe to call from any thread.
+     *
+     * @param text The text to put on the clipboard
+     */
+    public static void setClipboard(String text) {
+        clipboard = text;
+        PENDING_CLIPBOARD.set(text);
+        glfwPostEmptyEvent();
+    }
+
+    // Only called on the main thread
+    private void writePendingClipboard() {
+        String pending = PENDING_CLIPBOARD.getAndSet(null);
+        if (pending != null) {
+            glfwSetClipboardString(window, pending);
+        }
+    }
+
+    // Only called on the main thread, after writing what is pending so it isn't overwritten
+    private void readClipboard() {
+        String text = glfwGetClipboardString(window);
+        clipboard = text != null ? text : "";
+    }
+
+    private static boolean isPasteShortcut(int key, int mods) {
+        return key == GLFW_KEY_V && (mods & (GLFW_MOD_CONTROL | GLFW_MOD_SUPER)) != 0
+                || key == GLFW_KEY_INSERT && (mods & GLFW_MOD_SHIFT) != 0;
+    }
+
+    /**
+     * Hands every queued event to a listener, in the order they happened. Call this on the render thread.
+     *
+     * @param listener Receives the events
+     */
+    public void drain(InputListener listener) {
+        Event event;
+        while ((event = events.poll()) != null) {
+            switch (event.type) {
+                case KEY:
+                    listener.onKey(event.a, event.b, event.c, event.d);
+                    break;
+                case CHAR:
+                    listener.onChar(event.a);
+                    break;
+                case MOUSE_BUTTON:
+                    listener.onMouseButton(event.a, event.b, event.c);
+                    break;
+                case CURSOR_POS:
+                    listener.onCursorPos(event.x, event.y);
+                    break;
+                default:
+                    listener.onScroll(event.x, event.y);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return The window width, as of the last {@link #updateWindowState()}
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The window height, as of the last {@link #updateWindowState()}
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The framebuffer width in pixels, as of the last {@link #updateWindowState()}
+     */
+    public int getFramebufferWidth() {
+        return framebufferWidth;
+    }
+
+    /**
+     * @return The framebuffer height in pixels, as of the last {@link #updateWindowState()}
+     */
+    public int getFramebufferHeight() {
+        return framebufferHeight;
+    }
+
+    /**
+     * @return true if the window had focus, as of the last {@link #updateWindowState()}
+     */
+    public boolean isFocused() {
+        return focused;
+    }
+
+    @Override
+    public void onKey(int key, int scancode, int action, int mods) {
+        if (action != GLFW_RELEASE && isPasteShortcut(key, mods)) {
+            // Read the clipboard before the render thread sees the shortcut and asks for it
+            writePendingClipboard();
+            readClipboard();
+        }
+        events.add(new Event(KEY, key, scancode, action, mods, 0, 0));
+    }
+
+    @Override
+    public void onChar(int codepoint) {
+        events.add(new Event(CHAR, codepoint, 0, 0, 0, 0, 0));
+    }
+
+    @Override
+    public void onMouseButton(int button, int action, int mods) {
+        events.add(new Event(MOUSE_BUTTON, button, action, mods, 0, 0, 0));
+    }
+
+    @Override
+    public void onCursorPos(double x, double y) {
+        events.add(new Event(CURSOR_POS, 0, 0, 0, 0, x, y));
+    }
+
+    @Override
+    public void onScroll(double xOffset, double yOffset) {
+        events.add(new Event(SCROLL, 0, 0, 0, 0, xOffset, yOffset));
+    }
+
+    private static final class Event {
+        final int type;
+        final int a;
+        final int b;
+        final int c;
+        final int d;
+        final double x;
+        final double y;
+
+        Event(int type, int a, int b, int c, int d, double x, double y) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
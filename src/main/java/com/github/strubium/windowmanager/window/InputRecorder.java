@@ -0,0 +1,245 @@
+package com.github.strubium.windowmanager.window;
+
+import org.lwjgl.glfw.GLFWCharCallback;
+import org.lwjgl.glfw.GLFWCursorPosCallback;
+import org.lwjgl.glfw.GLFWKeyCallback;
+import org.lwjgl.glfw.GLFWMouseButtonCallback;
+import org.lwjgl.glfw.GLFWScrollCallback;
+import org.lwjgl.system.Callback;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Records the input of a window to a compact binary file, to be played back with {@link InputReplayer}.
+ * <p>
+ * Start the recorder after {@link com.github.strubium.windowmanager.imgui.ImguiHandler#initialize} and any other
+ * callbacks are installed. Events are passed on to those callbacks, so the application keeps working while recording.
+ * <p>
+ * The file starts with a magic number and version, followed by one entry per event: a type byte, the microseconds
+ * since the previous event as a varint and the event arguments. Keys, buttons and codepoints are varints and
+ * positions and scroll offsets are floats, so most events take 4 to 10 bytes.
+ *
+ * @author strubium
+ */
+public class InputRecorder implements InputListener {
+    static final int MAGIC = 0x4A574D49; // "JWMI"
+    static final int VERSION = 1;
+
+    static final int KEY = 1;
+    static final int CHAR = 2;
+    static final int MOUSE_BUTTON = 3;
+    static final int CURSOR_POS = 4;
+    static final int SCROLL = 5;
+
+    private final long window;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private long lastEventMicros;
+    private long startNanos;
+    private int eventCount;
+    private boolean recording;
+
+    private GLFWKeyCallback previousKey;
+    private GLFWCharCallback previousChar;
+    private GLFWMouseButtonCallback previousMouseButton;
+    private GLFWCursorPosCallback previousCursorPos;
+    private GLFWScrollCallback previousScroll;
+
+    /**
+     * Create an InputRecorder
+     *
+     * @param window The GLFW window handle
+     */
+    public InputRecorder(long window) {
+        this.window = window;
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts recording, the cursor position at this moment is recorded as the first event
+     */
+    public void start() {
+        if (recording) {
+            return;
+        }
+        recording = true;
+        startNanos = System.nanoTime();
+        lastEventMicros = 0;
+
+        previousKey = glfwSetKeyCallback(window, (w, key, scancode, action, mods) -> {
+            onKey(key, scancode, action, mods);
+            if (previousKey != null) {
+                previousKey.invoke(w, key, scancode, action, mods);
+            }
+        });
+        previousChar = glfwSetCharCallback(window, (w, codepoint) -> {
+            onChar(codepoint);
+            if (previousChar != null) {
+                previousChar.invoke(w, codepoint);
+            }
+        });
+        previousMouseButton = glfwSetMouseButtonCallback(window, (w, button, action, mods) -> {
+            onMouseButton(button, action, mods);
+            if (previousMouseButton != null) {
+                previousMouseButton.invoke(w, button, action, mods);
+            }
+        });
+        previousCursorPos = glfwSetCursorPosCallback(window, (w, x, y) -> {
+            onCursorPos(x, y);
+            if (previousCursorPos != null) {
+                previousCursorPos.invoke(w, x, y);
+            }
+        });
+        previousScroll = glfwSetScrollCallback(window, (w, xOffset, yOffset) -> {
+            onScroll(xOffset, yOffset);
+            if (previousScroll != null) {
+                previousScroll.invoke(w, xOffset, yOffset);
+            }
+        });
+
+        double[] x = new double[1];
+        double[] y = new double[1];
+        glfwGetCursorPos(window, x, y);
+        onCursorPos(x[0], y[0]);
+    }
+
+    /**
+     * Stops recording and puts the previous callbacks back
+     */
+    public void stop() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        freeCallback(glfwSetKeyCallback(window, previousKey));
+        freeCallback(glfwSetCharCallback(window, previousChar));
+        freeCallback(glfwSetMouseButtonCallback(window, previousMouseButton));
+        freeCallback(glfwSetCursorPosCallback(window, previousCursorPos));
+        freeCallback(glfwSetScrollCallback(window, previousScroll));
+    }
+
+    /**
+     * Writes the recorded events to a file
+     *
+     * @param path The path to write to
+     * @return The number of bytes written
+     */
+    public int save(String path) {
+        Path target = Paths.get(path).toAbsolutePath();
+        try {
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                bytes.writeTo(file);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save input recording " + path, e);
+        }
+        return bytes.size();
+    }
+
+    /**
+     * @return The number of events recorded
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public void onKey(int key, int scancode, int action, int mods) {
+        try {
+            begin(KEY);
+            writeVarInt(key + 1); // GLFW_KEY_UNKNOWN is -1
+            writeVarInt(scancode);
+            out.writeByte(action);
+            out.writeByte(mods);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void onChar(int codepoint) {
+        try {
+            begin(CHAR);
+            writeVarInt(codepoint);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void onMouseButton(int button, int action, int mods) {
+        try {
+            begin(MOUSE_BUTTON);
+            out.writeByte(button);
+            out.writeByte(action);
+            out.writeByte(mods);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void onCursorPos(double x, double y) {
+        try {
+            begin(CURSOR_POS);
+            out.writeFloat((float) x);
+            out.writeFloat((float) y);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void onScroll(double xOffset, double yOffset) {
+        try {
+            begin(SCROLL);
+            out.writeFloat((float) xOffset);
+            out.writeFloat((float) yOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void begin(int type) throws IOException {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        out.writeByte(type);
+        writeVarLong(micros - lastEventMicros);
+        lastEventMicros = micros;
+        eventCount++;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static void freeCallback(Callback callback) {
+        if (callback != null) {
+            callback.free();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.github.strubium.windowmanager.window;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Plays back a file written by {@link InputRecorder} at a fixed simulated timestep, so every run sees the same
+ * input on the same frame no matter how long the frames actually take.
+ * <p>
+ * Hand the replayer to {@link com.github.strubium.windowmanager.imgui.ImguiHandler#setInputReplayer} and
+ * {@link InputUtils#setInputReplayer}, which then use it instead of the live GLFW input. Each frame the simulated
+ * clock moves forward by one timestep and the events up to that time are delivered. The wall time of every frame
+ * is kept and can be written out with {@link #writeFrameTimes(String)}.
+ *
+ * @author strubium
+ */
+public class InputReplayer {
+    private static final int MOUSE_BUTTONS = 8;
+
+    private final ByteBuffer data;
+    private final long timestepMicros;
+    private final float timestep;
+
+    private long simulatedMicros;
+    private long nextEventMicros;
+    private int nextType;
+    private int frame;
+
+    private final boolean[] keysDown = new boolean[GLFW_KEY_LAST + 1];
+    private final boolean[] buttonsDown = new boolean[MOUSE_BUTTONS];
+    // Presses released again within the same frame still count as down for that frame
+    private final boolean[] buttonsPressed = new boolean[MOUSE_BUTTONS];
+    private float mouseX = -Float.MAX_VALUE;
+    private float mouseY = -Float.MAX_VALUE;
+    private float scrollX;
+    private float scrollY;
+
+    private long lastFrameNanos;
+    private long[] frameNanos = new long[1024];
+
+    /**
+     * Create an InputReplayer
+     *
+     * @param path The recording to play back
+     * @param timestep The simulated time of one frame, in seconds
+     */
+    public InputReplayer(String path, float timestep) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read input recording " + path, e);
+        }
+        this.data = ByteBuffer.wrap(bytes);
+        this.timestep = timestep;
+        this.timestepMicros = Math.round(timestep * 1_000_000.0);
+
+        if (data.remaining() < 5 || data.getInt() != InputRecorder.MAGIC) {
+            throw new RuntimeException(path + " is not an input recording");
+        }
+        int version = data.get();
+        if (version != InputRecorder.VERSION) {
+            throw new RuntimeException("Unsupported input recording version " + version + " in " + path);
+        }
+        readHeader();
+    }
+
+    /**
+     * Moves the simulated clock forward by one timestep and delivers the events that happened in it.
+     * Call this once per frame, {@link com.github.strubium.windowmanager.imgui.ImguiHandler#newFrame()} does so
+     * when the replayer is set on it.
+     *
+     * @param listener Receives the events, may be null
+     * @return false once every event has been delivered
+     */
+    public boolean advance(InputListener listener) {
+        long now = System.nanoTime();
+        if (frame > 0) {
+            if (frame > frameNanos.length) {
+                frameNanos = Arrays.copyOf(frameNanos, frameNanos.length * 2);
+            }
+            frameNanos[frame - 1] = now - lastFrameNanos;
+        }
+        lastFrameNanos = now;
+        frame++;
+
+        simulatedMicros += timestepMicros;
+        Arrays.fill(buttonsPressed, false);
+        scrollX = 0;
+        scrollY = 0;
+
+        while (nextType != 0 && nextEventMicros <= simulatedMicros) {
+            deliver(listener);
+            readHeader();
+        }
+        return nextType != 0;
+    }
+
+    /**
+     * @return true once every event has been delivered
+     */
+    public boolean isFinished() {
+        return nextType == 0;
+    }
+
+    /**
+     * @return The simulated time of one frame, in seconds
+     */
+    public float getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * @return The number of frames advanced so far
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Is a key held down in the recording?
+     *
+     * @param key The GLFW key code
+     * @return true if the key is down
+     */
+    public boolean isKeyDown(int key) {
+        return key >= 0 && key < keysDown.length && keysDown[key];
+    }
+
+    /**
+     * Is a mouse button held down in the recording? Also true on the frame of a press that was released again.
+     *
+     * @param button The GLFW mouse button
+     * @return true if the button is down
+     */
+    public boolean isMouseButtonDown(int button) {
+        return button >= 0 && button < MOUSE_BUTTONS && (buttonsDown[button] || buttonsPressed[button]);
+    }
+
+    /**
+     * @return The recorded cursor x position
+     */
+    public float getMouseX() {
+        return mouseX;
+    }
+
+    /**
+     * @return The recorded cursor y position
+     */
+    public float getMouseY() {
+        return mouseY;
+    }
+
+    /**
+     * @return The horizontal scroll delivered this frame
+     */
+    public float getScrollX() {
+        return scrollX;
+    }
+
+    /**
+     * @return The vertical scroll delivered this frame
+     */
+    public float getScrollY() {
+        return scrollY;
+    }
+
+    /**
+     * @return The number of frames whose wall time is known, every frame advanced so far except the last
+     */
+    public int getFinishedFrames() {
+        return Math.max(frame - 1, 0);
+    }
+
+    /**
+     * @return The average wall time of the finished frames in milliseconds, or 0 if there are none
+     */
+    public double getAverageFrameMillis() {
+        int frames = getFinishedFrames();
+        long total = 0;
+        for (int i = 0; i < frames; i++) {
+            total += frameNanos[i];
+        }
+        return frames > 0 ? total / (double) frames / 1_000_000.0 : 0;
+    }
+
+    /**
+     * @return The longest wall time of the finished frames in milliseconds, or 0 if there are none
+     */
+    public double getMaxFrameMillis() {
+        int frames = getFinishedFrames();
+        long max = 0;
+        for (int i = 0; i < frames; i++) {
+            max = Math.max(max, frameNanos[i]);
+        }
+        return max / 1_000_000.0;
+    }
+
+    /**
+     * Writes the wall time of every finished frame as CSV, one line per frame. Summaries are available from
+     * {@link #getAverageFrameMillis()} and {@link #getMaxFrameMillis()}.
+     *
+     * @param path The path to write to
+     * @return The number of frames written
+     */
+    public int writeFrameTimes(String path) {
+        int frames = getFinishedFrames();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(path)))) {
+            writer.println("frame,simulated_ms,frame_ms");
+            for (int i = 0; i < frames; i++) {
+                writer.printf("%d,%.3f,%.3f%n", i, i * timestepMicros / 1000.0, frameNanos[i] / 1_000_000.0);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write frame times " + path, e);
+        }
+        return frames;
+    }
+
+    private void readHeader() {
+        if (!data.hasRemaining()) {
+            nextType = 0;
+            return;
+        }
+        nextType = data.get();
+        nextEventMicros += readVarLong();
+    }
+
+    private void deliver(InputListener listener) {
+        switch (nextType) {
+            case InputRecorder.KEY: {
+                int key = readVarInt() - 1;
+                int scancode = readVarInt();
+                int action = data.get();
+                int mods = data.get();
+                if (key >= 0 && key < keysDown.length) {
+                    keysDown[key] = action != GLFW_RELEASE;
+                }
+                if (listener != null) {
+                    listener.onKey(key, scancode, action, mods);
+                }
+                break;
+            }
+            case InputRecorder.CHAR: {
+                int codepoint = readVarInt();
+                if (listener != null) {
+                    listener.onChar(codepoint);
+                }
+                break;
+            }
+            case InputRecorder.MOUSE_BUTTON: {
+                int button = data.get();
+                int action = data.get();
+                int mods = data.get();
+                if (button >= 0 && button < MOUSE_BUTTONS) {
+                    buttonsDown[button] = action == GLFW_PRESS;
+                    buttonsPressed[button] |= action == GLFW_PRESS;
+                }
+                if (listener != null) {
+                    listener.onMouseButton(button, action, mods);
+                }
+                break;
+            }
+            case InputRecorder.CURSOR_POS: {
+                mouseX = data.getFloat();
+                mouseY = data.getFloat();
+                if (listener != null) {
+                    listener.onCursorPos(mouseX, mouseY);
+                }
+                break;
+            }
+            case InputRecorder.SCROLL: {
+                float xOffset = data.getFloat();
+                float yOffset = data.getFloat();
+                scrollX += xOffset;
+                scrollY += yOffset;
+                if (listener != null) {
+                    listener.onScroll(xOffset, yOffset);
+                }
+                break;
+            }
+            default:
+                throw new RuntimeException("Corrupt input recording, unknown event type " + nextType);
+        }
+    }
+
+    private int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
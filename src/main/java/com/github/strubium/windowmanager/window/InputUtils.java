@@ -8,6 +8,7 @@ import org.lwjgl.glfw.GLFW;
 public class InputUtils {
 
     private final long window;
+    private InputReplayer replayer;
 
     /**
      * Constructs a MouseUtils object with the specified window handle.
@@ -19,12 +20,24 @@ public class InputUtils {
     }
 
 
+    /**
+     * Answer from a recording instead of the live GLFW input
+     *
+     * @param replayer The recording being played back, or null to use live input again
+     */
+    public void setInputReplayer(InputReplayer replayer) {
+        this.replayer = replayer;
+    }
+
     /**
      * Gets the mouse position relative to the window.
      *
      * @return A float array containing [mouseX, mouseY] coordinates
      */
     public float[] getMousePosition() {
+        if (replayer != null) {
+            return new float[]{replayer.getMouseX(), replayer.getMouseY()};
+        }
         double[] mouseX = new double[1];
         double[] mouseY = new double[1];
         GLFW.glfwGetCursorPos(window, mouseX, mouseY);
@@ -65,10 +78,16 @@ public class InputUtils {
     }
 
     public boolean isMouseButtonPressed(int button) {
+        if (replayer != null) {
+            return replayer.isMouseButtonDown(button);
+        }
         return GLFW.glfwGetMouseButton(window, button) == GLFW.GLFW_PRESS;
     }
 
     public boolean isKeyPressed(int button) {
+        if (replayer != null) {
+            return replayer.isKeyDown(button);
+        }
         return GLFW.glfwGetKey(window, button) == GLFW.GLFW_PRESS;
     }
 
@@ -1,14 +1,24 @@
 package com.github.strubium.windowmanager.window;
 
+import com.github.strubium.windowmanager.asset.AssetLoader;
+import com.github.strubium.windowmanager.asset.DecodedImage;
+import com.github.strubium.windowmanager.metrics.FrameMetric;
+import com.github.strubium.windowmanager.metrics.FlightEvents;
+import com.github.strubium.windowmanager.metrics.FrameMetrics;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.glfw.GLFWImage;
 import org.lwjgl.glfw.GLFWVidMode;
-import org.lwjgl.stb.STBImage;
 import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.Configuration;
 import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.Platform;
 
-import java.nio.ByteBuffer;
+import java.lang.management.ManagementFactory;
 import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
 import static org.lwjgl.glfw.GLFW.*;
@@ -23,11 +33,27 @@ import static org.lwjgl.system.MemoryUtil.NULL;
  */
 public class WindowManager {
 
+    // Open windows across every WindowManager, GLFW is terminated when the last one is destroyed
+    private static int openWindows;
+    // Whether GLFW was started on its null platform, windows created after the first must match it
+    private static boolean softwareContext;
+
     /**The window handle*/
     public long window;  //
+    private GLCapabilities capabilities;
     private boolean fullscreen;
     private final int windowWidth;
     private final int windowHeight;
+    private final boolean headless;
+    private Framebuffer framebuffer;
+    private volatile AcceleratorTable accelerators;
+    // Set while an ImguiHandler dispatches the accelerators on the render thread, the key callback leaves them alone
+    private volatile boolean acceleratorsDeferred;
+    // The JFR frame event in progress
+    private Object frameEvent;
+    private long frameNumber;
+    // Milliseconds from JVM start to the first swap, -1 until then
+    private volatile long timeToFirstFrame = -1;
 
 
     /**
@@ -38,9 +64,23 @@ public class WindowManager {
      * @param fullscreen Should the window be in fullscreen or windowed
      */
     public WindowManager(int width, int height, boolean fullscreen) {
+        this(width, height, fullscreen, false);
+    }
+
+    /**
+     * Create a WindowManager
+     *
+     * @param width The width of the window
+     * @param height The height of the window
+     * @param fullscreen Should the window be in fullscreen or windowed, ignored when headless
+     * @param headless Should the window stay hidden and render into an offscreen {@link Framebuffer}?
+     *                 Without a display server this uses Mesa's software OpenGL, so no display or GPU is needed.
+     */
+    public WindowManager(int width, int height, boolean fullscreen, boolean headless) {
         this.windowWidth = width;
         this.windowHeight = height;
-        this.fullscreen = fullscreen;
+        this.fullscreen = fullscreen && !headless;
+        this.headless = headless;
     }
 
 
@@ -51,36 +91,88 @@ public class WindowManager {
      * @param vSync Should it use vSync?
      */
     public void createWindow(String windowTitle, boolean vSync) {
-        // Setup error callback
-        GLFWErrorCallback.createPrint(System.err).set();
+        createWindow(windowTitle, vSync, null);
+    }
+
+    /**
+     * Create the Window, sharing textures, buffers and shaders with another window's OpenGL context.
+     * Use this for extra tool windows, see {@link WindowRegistry}.
+     *
+     * @param windowTitle The title of the window to use
+     * @param vSync Should it use vSync?
+     * @param shareWith The window to share OpenGL objects with, or null to share with none
+     */
+    public void createWindow(String windowTitle, boolean vSync, WindowManager shareWith) {
+        if (openWindows == 0) {
+            // Setup error callback
+            GLFWErrorCallback.createPrint(System.err).set();
+
+            softwareContext = headless && useNullPlatform();
 
-        if (!glfwInit()) {
-            throw new IllegalStateException("Unable to initialize GLFW");
+            if (!glfwInit()) {
+                throw new IllegalStateException("Unable to initialize GLFW");
+            }
         }
 
         // Configure window settings
         glfwDefaultWindowHints();
         glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);  // Window will stay hidden after creation
         glfwWindowHint(GLFW_RESIZABLE, GLFW_TRUE);  // Window will be resizable
+        if (softwareContext) {
+            glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_OSMESA_CONTEXT_API);
+        }
 
         long monitor = fullscreen ? glfwGetPrimaryMonitor() : NULL;
-        window = glfwCreateWindow(windowWidth, windowHeight, windowTitle, monitor, NULL);
+        window = glfwCreateWindow(windowWidth, windowHeight, windowTitle, monitor, shareWith != null ? shareWith.window : NULL);
 
         if (window == NULL) {
             throw new RuntimeException("Failed to create the GLFW window");
         }
+        openWindows++;
 
-        centerWindow();
+        if (!headless) {
+            centerWindow();
+        }
 
         glfwMakeContextCurrent(window);
-        glfwSwapInterval(vSync ? 1 : 0); // Enable v-sync
-        glfwShowWindow(window);
+        glfwSwapInterval(vSync && !headless ? 1 : 0); // Enable v-sync
+        if (!headless) {
+            glfwShowWindow(window);
+        }
 
-        GL.createCapabilities(); // This line is critical for LWJGL's interoperation with GLFW's OpenGL context
+        capabilities = GL.createCapabilities(); // This line is critical for LWJGL's interoperation with GLFW's OpenGL context
+
+        if (headless) {
+            framebuffer = new Framebuffer(windowWidth, windowHeight);
+            framebuffer.bind();
+        }
 
         doOpenGLSetup();
     }
 
+    /**
+     * Switches GLFW to its null platform and OpenGL to OSMesa when there is no display server to open a window on.
+     * Must be called before glfwInit.
+     *
+     * @return true if the window will get a software OpenGL context
+     */
+    private boolean useNullPlatform() {
+        if (Platform.get() != Platform.LINUX
+                || !isEmpty(System.getenv("DISPLAY")) || !isEmpty(System.getenv("WAYLAND_DISPLAY"))) {
+            return false;
+        }
+        if (!glfwPlatformSupported(GLFW_PLATFORM_NULL)) {
+            return false;
+        }
+        glfwInitHint(GLFW_PLATFORM, GLFW_PLATFORM_NULL);
+        Configuration.OPENGL_CONTEXT_API.set("OSMesa");
+        return true;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
     private void centerWindow() {
         try (MemoryStack stack = stackPush()) {
             IntBuffer pWidth = stack.mallocInt(1);
@@ -111,13 +203,52 @@ public class WindowManager {
             if (key == GLFW_KEY_F11 && action == GLFW_PRESS) {
                 toggleFullscreen();
             }
+            if (!acceleratorsDeferred && action == GLFW_PRESS) {
+                dispatchAccelerator(key, mods);
+            }
         });
     }
 
+    /**
+     * Sets the keyboard shortcuts of the window, they work whether a menu is open or not. Without an ImGui handler
+     * they run from the key callback set by {@link #setupDefaultKeys()} on the thread that polls events. With one
+     * they run on the thread that renders the window and not while a text input has focus.
+     *
+     * @param accelerators The shortcuts, or null for none
+     */
+    public void setAccelerators(AcceleratorTable accelerators) {
+        this.accelerators = accelerators;
+    }
+
+    /**
+     * Runs the shortcut bound to a key press, if there is one
+     *
+     * @param key The GLFW key
+     * @param mods The GLFW modifier bits
+     * @return true if a shortcut ran
+     */
+    public boolean dispatchAccelerator(int key, int mods) {
+        AcceleratorTable table = accelerators;
+        return table != null && table.dispatch(key, mods);
+    }
+
+    /**
+     * Stops the key callback set by {@link #setupDefaultKeys()} from running the shortcuts, whoever defers them calls
+     * {@link #dispatchAccelerator(int, int)} instead. The ImGui handler of the window does this while it is initialized.
+     *
+     * @param deferred true to leave the shortcuts to {@link #dispatchAccelerator(int, int)} callers
+     */
+    public void setAcceleratorsDeferred(boolean deferred) {
+        this.acceleratorsDeferred = deferred;
+    }
+
     /**
      * Toggles fullscreen for the window
      */
     public void toggleFullscreen() {
+        if (headless) {
+            return;
+        }
         fullscreen = !fullscreen;
 
         GLFWVidMode vidMode = glfwGetVideoMode(glfwGetPrimaryMonitor());
@@ -141,16 +272,48 @@ public class WindowManager {
         glfwPollEvents();
     }
 
-    private void swapBuffers() {
+    void swapBuffers() {
         glfwSwapBuffers(window);
+        if (timeToFirstFrame < 0) {
+            timeToFirstFrame = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        }
+    }
+
+    /**
+     * Gets the time from the start of the JVM until this window swapped its first frame. Compare it with and without
+     * loading icons, fonts and HTML through an {@link AssetLoader} to see what loading in parallel saves.
+     *
+     * @return The time in milliseconds, or -1 before the first frame
+     */
+    public long getTimeToFirstFrameMillis() {
+        return timeToFirstFrame;
     }
 
     /**
-     * Swap buffers and Poll events
+     * Makes this window's OpenGL context current on the calling thread, needed before drawing when there are several windows
+     */
+    public void makeContextCurrent() {
+        glfwMakeContextCurrent(window);
+        GL.setCapabilities(capabilities);
+    }
+
+    /**
+     * Swap buffers and Poll events, this ends the frame for {@link FrameMetrics}
      */
     public void swapAndPoll(){
+        long start = FrameMetrics.start();
         swapBuffers();
+        FrameMetrics.stop(FrameMetric.SWAP, start);
+
+        start = FrameMetrics.start();
+        Object inputEvent = FlightEvents.beginInputDrain();
         pollEvents();
+        FlightEvents.endInputDrain(inputEvent, "glfwPollEvents");
+        FrameMetrics.stop(FrameMetric.POLL_INPUT, start);
+
+        FrameMetrics.endFrame();
+        FlightEvents.endFrame(frameEvent, frameNumber++);
+        frameEvent = FlightEvents.beginFrame();
     }
 
     /**
@@ -172,13 +335,44 @@ public class WindowManager {
     }
 
     /**
-     * Destroy the window
+     * Destroy the window, GLFW is terminated once the last window is destroyed
      */
     public void destroy() {
+        if (window == NULL) {
+            return;
+        }
+        if (framebuffer != null) {
+            makeContextCurrent();
+            framebuffer.destroy();
+            framebuffer = null;
+        }
         glfwFreeCallbacks(window);
         glfwDestroyWindow(window);
-        glfwTerminate();
-        glfwSetErrorCallback(null).free();
+        window = NULL;
+        openWindows--;
+
+        if (openWindows == 0) {
+            glfwTerminate();
+            glfwSetErrorCallback(null).free();
+        }
+    }
+
+    /**
+     * Is the window headless?
+     *
+     * @return true if the window is hidden and renders into {@link #getFramebuffer()}
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Get the offscreen framebuffer of a headless window, read the finished frame back with {@link Framebuffer#readPixels}
+     *
+     * @return The framebuffer, or null if the window isn't headless or hasn't been created
+     */
+    public Framebuffer getFramebuffer() {
+        return framebuffer;
     }
 
     /**
@@ -196,26 +390,54 @@ public class WindowManager {
      * @param imagePath The path to the icon image (must be PNG or similar)
      */
     public void setWindowIcon(String imagePath) {
-        try (MemoryStack stack = stackPush()) {
-            IntBuffer width = stack.mallocInt(1);
-            IntBuffer height = stack.mallocInt(1);
-            IntBuffer channels = stack.mallocInt(1);
+        DecodedImage image = DecodedImage.load(imagePath);
+        try {
+            setWindowIcons(Collections.singletonList(image));
+        } finally {
+            image.free();
+        }
+    }
 
-            ByteBuffer image = STBImage.stbi_load(imagePath, width, height, channels, 4);
-            if (image == null) {
-                throw new RuntimeException("Failed to load icon image: " + STBImage.stbi_failure_reason());
+    /**
+     * Set the window icon from several resolutions, the system picks the closest size for each use.
+     * Must be called from the main thread.
+     *
+     * @param images The decoded icon images
+     */
+    public void setWindowIcons(List<DecodedImage> images) {
+        try (MemoryStack stack = stackPush()) {
+            GLFWImage.Buffer iconBuffer = GLFWImage.malloc(images.size(), stack);
+            for (int i = 0; i < images.size(); i++) {
+                DecodedImage image = images.get(i);
+                iconBuffer.position(i);
+                iconBuffer.width(image.getWidth());
+                iconBuffer.height(image.getHeight());
+                iconBuffer.pixels(image.getPixels());
             }
-
-            GLFWImage.Buffer iconBuffer = GLFWImage.malloc(1, stack);
             iconBuffer.position(0);
-            iconBuffer.width(width.get(0));
-            iconBuffer.height(height.get(0));
-            iconBuffer.pixels(image);
 
             glfwSetWindowIcon(window, iconBuffer);
-
-            STBImage.stbi_image_free(image);
         }
     }
 
+    /**
+     * Set the window icon from several resolutions, decoding them in parallel on the loader threads.
+     * The icon is applied the next time the loader runs its main thread tasks.
+     *
+     * @param loader The loader to decode with
+     * @param imagePaths The paths to the icon images (must be PNG or similar)
+     * @return A future completed once the icon has been set
+     */
+    public CompletableFuture<Void> setWindowIconAsync(AssetLoader loader, String... imagePaths) {
+        return loader.onMainThread(loader.loadImages(imagePaths), images -> {
+            try {
+                setWindowIcons(images);
+            } finally {
+                for (DecodedImage image : images) {
+                    image.free();
+                }
+            }
+        });
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,328 @@
+package com.github.strubium.windowmanager.window;
+
+import com.github.strubium.windowmanager.imgui.ImguiHandler;
+import com.github.strubium.windowmanager.metrics.FlightEvents;
+import com.github.strubium.windowmanager.metrics.FrameMetric;
+import com.github.strubium.windowmanager.metrics.FrameMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL11.*;
+
+/**
+ * Runs several windows from one event loop.
+ * <p>
+ * The first window opened is the primary one, every later window shares its OpenGL objects (textures, buffers,
+ * shaders) and its ImGui font atlas and renderer, so each extra window only costs its own GLFW window and ImGui
+ * context. Every window gets its own ImGui context, so input goes to the window it happened in.
+ * <p>
+ * When the primary window is closed while others are still open it is only hidden, since the others depend on
+ * its context. Everything is destroyed and GLFW terminated once the last window closes.
+ * <p>
+ * With {@link #setRenderThreads(boolean)} every window draws and swaps on a thread of its own, so the vsync waits of
+ * the windows overlap instead of adding up. The main thread only polls events and hands them to the windows through
+ * {@link InputQueue}s. The ImGui context is global to the process, so building and rendering the UI still happens
+ * one window at a time under a lock, only the swaps run in parallel.
+ *
+ * @author strubium
+ */
+public class WindowRegistry {
+    private final String glslVersion;
+    private final List<Entry> entries = new ArrayList<>();
+    private Entry primary;
+    private double waitTimeout;
+    private boolean renderThreads;
+    private BiConsumer<WindowManager, Throwable> renderErrorHandler;
+    // Held while a thread uses ImGui, the current context is shared by every thread
+    private final Object imguiLock = new Object();
+
+    /**
+     * Create a WindowRegistry
+     *
+     * @param glslVersion the version of OpenGL the ImGui renderer uses (Ex: #version 130)
+     */
+    public WindowRegistry(String glslVersion) {
+        this.glslVersion = glslVersion;
+    }
+
+    /**
+     * Creates a window and its ImGui context. Call this on the main thread, before {@link #run()}.
+     *
+     * @param window The window to create
+     * @param windowTitle The title of the window
+     * @param vSync Should it use vSync?
+     * @param frame Builds the window's UI each frame, called with the window's context and ImGui context current
+     * @return The ImGui handler of the window
+     */
+    public ImguiHandler open(WindowManager window, String windowTitle, boolean vSync, Runnable frame) {
+        window.createWindow(windowTitle, vSync, primary != null ? primary.window : null);
+
+        ImguiHandler imguiHandler = new ImguiHandler(window);
+        imguiHandler.initialize(glslVersion, primary != null ? primary.imguiHandler : null);
+
+        Entry entry = new Entry(window, imguiHandler, frame);
+        entries.add(entry);
+        if (primary == null) {
+            primary = entry;
+        }
+        return imguiHandler;
+    }
+
+    /**
+     * Wait for events instead of polling, so idle windows don't redraw constantly. With render threads the windows
+     * keep drawing and this only sets how long the main thread waits for events.
+     *
+     * @param timeoutSeconds The longest to wait before drawing anyway, or 0 to poll and draw as fast as possible
+     */
+    public void setWaitEvents(double timeoutSeconds) {
+        this.waitTimeout = timeoutSeconds;
+    }
+
+    /**
+     * Draw and swap every window on its own thread, call this before {@link #run()}.
+     * <p>
+     * {@link FrameMetrics} then sums the work of every window into the primary window's frames, like the single
+     * thread loop does. A swap is added to the frame in progress when its thread next takes the ImGui lock, and
+     * {@link FrameMetric#POLL_INPUT} is the time the render threads spend draining their queues, since the main
+     * thread's wait for events isn't part of any frame. {@link FrameMetric#FRAME} is the time between the primary
+     * window's frames and {@link FrameMetric#ALLOCATED_BYTES} only counts the primary window's render thread.
+     *
+     * @param renderThreads true to give every window a render thread
+     */
+    public void setRenderThreads(boolean renderThreads) {
+        this.renderThreads = renderThreads;
+    }
+
+    /**
+     * Handles a render thread that failed, on the main thread once its window is closed. Without a handler
+     * {@link #run()} closes every window and throws the failure, like the single thread loop would.
+     *
+     * @param handler Receives the window whose render thread failed and the exception, or null to throw from run
+     */
+    public void setRenderErrorHandler(BiConsumer<WindowManager, Throwable> handler) {
+        this.renderErrorHandler = handler;
+    }
+
+    /**
+     * @return The number of open windows
+     */
+    public int getOpenCount() {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (!entry.closed) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Draws every window until all of them are closed, then destroys them and terminates GLFW. Call this on the main thread.
+     */
+    public void run() {
+        if (renderThreads) {
+            runThreaded();
+            return;
+        }
+        long frameNumber = 0;
+        while (getOpenCount() > 0) {
+            Object frameEvent = FlightEvents.beginFrame();
+            long start = FrameMetrics.start();
+            Object inputEvent = FlightEvents.beginInputDrain();
+            if (waitTimeout > 0) {
+                glfwWaitEventsTimeout(waitTimeout);
+            } else {
+                glfwPollEvents();
+            }
+            FlightEvents.endInputDrain(inputEvent, waitTimeout > 0 ? "glfwWaitEventsTimeout" : "glfwPollEvents");
+            FrameMetrics.stop(FrameMetric.POLL_INPUT, start);
+
+            for (Entry entry : entries) {
+                if (entry.closed) {
+                    continue;
+                }
+                if (entry.window.shouldClose()) {
+                    close(entry);
+                    continue;
+                }
+                drawFrame(entry);
+            }
+            entries.removeIf(entry -> entry.closed && entry != primary);
+            FrameMetrics.endFrame();
+            FlightEvents.endFrame(frameEvent, frameNumber++);
+        }
+        destroyAll();
+    }
+
+    private void drawFrame(Entry entry) {
+        entry.window.makeContextCurrent();
+        entry.imguiHandler.newFrame();
+        entry.frame.run();
+
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        entry.imguiHandler.render();
+
+        long start = FrameMetrics.start();
+        entry.window.swapBuffers();
+        FrameMetrics.stop(FrameMetric.SWAP, start);
+    }
+
+    private void runThreaded() {
+        // A context can only be current on one thread, the render threads take them over
+        glfwMakeContextCurrent(0);
+        for (Entry entry : entries) {
+            startThread(entry);
+        }
+
+        Entry failed = null;
+        while (failed == null && getOpenCount() > 0) {
+            Object inputEvent = FlightEvents.beginInputDrain();
+            if (waitTimeout > 0) {
+                glfwWaitEventsTimeout(waitTimeout);
+            } else {
+                glfwWaitEvents();
+            }
+            FlightEvents.endInputDrain(inputEvent, waitTimeout > 0 ? "glfwWaitEventsTimeout" : "glfwWaitEvents");
+
+            for (Entry entry : entries) {
+                if (entry.closed) {
+                    continue;
+                }
+                if (entry.window.shouldClose() || !entry.thread.isAlive()) {
+                    stopThread(entry);
+                    synchronized (imguiLock) {
+                        close(entry);
+                        glfwMakeContextCurrent(0);
+                    }
+                    if (entry.failure != null && renderErrorHandler != null) {
+                        renderErrorHandler.accept(entry.window, entry.failure);
+                    } else if (entry.failure != null && failed == null) {
+                        failed = entry;
+                    }
+                    continue;
+                }
+                entry.inputQueue.updateWindowState();
+            }
+            entries.removeIf(entry -> entry.closed && entry != primary);
+        }
+
+        if (failed != null) {
+            for (Entry entry : entries) {
+                if (!entry.closed) {
+                    stopThread(entry);
+                }
+            }
+        }
+        destroyAll();
+        if (failed != null) {
+            throw new RuntimeException("Render thread of window " + failed.window.window + " failed", failed.failure);
+        }
+    }
+
+    private void startThread(Entry entry) {
+        entry.inputQueue = new InputQueue(entry.window.window);
+        entry.inputQueue.updateWindowState();
+        entry.imguiHandler.setInputQueue(entry.inputQueue);
+
+        boolean endsFrame = entry == primary;
+        entry.thread = new Thread(() -> renderLoop(entry, endsFrame), "Render " + entry.window.window);
+        entry.thread.setDaemon(true);
+        entry.thread.start();
+    }
+
+    private void renderLoop(Entry entry, boolean endsFrame) {
+        entry.window.makeContextCurrent();
+        long frameNumber = 0;
+        // FrameMetrics may only be written under the lock, the last swap is added once the lock is held again
+        long swapTime = 0;
+        try {
+            while (!entry.closed) {
+                // Each render thread records its own frames, the events carry the thread they ran on
+                Object frameEvent = FlightEvents.beginFrame();
+                synchronized (imguiLock) {
+                    FrameMetrics.add(FrameMetric.SWAP, swapTime);
+                    entry.imguiHandler.newFrame();
+                    entry.frame.run();
+
+                    glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+                    entry.imguiHandler.render();
+                    // Every window's work goes into the primary window's frame, like in the single thread loop
+                    if (endsFrame) {
+                        FrameMetrics.endFrame();
+                    }
+                }
+                long start = FrameMetrics.start();
+                entry.window.swapBuffers();
+                swapTime = start != 0 ? System.nanoTime() - start : 0;
+                FlightEvents.endFrame(frameEvent, frameNumber++);
+            }
+        } catch (RuntimeException | Error e) {
+            // The main thread hands it to the error handler once it sees the thread has stopped
+            entry.failure = e;
+        } finally {
+            glfwMakeContextCurrent(0);
+            // Wake the main thread so it notices
+            glfwPostEmptyEvent();
+        }
+    }
+
+    private static void stopThread(Entry entry) {
+        entry.closed = true;
+        try {
+            entry.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a render thread", e);
+        }
+    }
+
+    private void close(Entry entry) {
+        entry.closed = true;
+        if (entry == primary) {
+            // The other windows still draw with the primary context's objects
+            glfwHideWindow(entry.window.window);
+            return;
+        }
+        destroy(entry);
+    }
+
+    private void destroyAll() {
+        // The primary goes last, the others share its font atlas and renderer
+        for (Entry entry : entries) {
+            if (entry != primary) {
+                destroy(entry);
+            }
+        }
+        if (primary != null) {
+            destroy(primary);
+        }
+        entries.clear();
+        primary = null;
+    }
+
+    private static void destroy(Entry entry) {
+        entry.window.makeContextCurrent();
+        entry.imguiHandler.cleanup();
+        entry.window.destroy();
+    }
+
+    private static final class Entry {
+        final WindowManager window;
+        final ImguiHandler imguiHandler;
+        final Runnable frame;
+        // Read by the window's render thread, if it has one
+        volatile boolean closed;
+        volatile Throwable failure;
+        InputQueue inputQueue;
+        Thread thread;
+
+        Entry(WindowManager window, ImguiHandler imguiHandler, Runnable frame) {
+            this.window = window;
+            this.imguiHandler = imguiHandler;
+            this.frame = frame;
+        }
+    }
+}